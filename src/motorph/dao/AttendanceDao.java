@@ -2,28 +2,35 @@ package motorph.dao;
 
 import motorph.model.AttendanceEntry;
 import motorph.model.AttendanceRecord;
+import motorph.util.AttendanceRepository;
 import motorph.util.AttendanceUtil;
 
 import java.io.IOException;
 import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
 
 /*
  * This DAO class handles attendance-related data operations.
- * It uses AttendanceUtil to load and manage attendance records.
+ * Lookups are answered from the in-memory AttendanceRepository index,
+ * which also keeps itself up to date on add, update, and delete.
  */
 public class AttendanceDao {
 
     public List<AttendanceEntry> findEntriesForEmployeeMonth(String empNo, YearMonth ym) {
-        return AttendanceUtil.loadEntriesForEmployeeMonth(empNo, ym);
+        return AttendanceRepository.findEntriesForEmployeeMonth(empNo, ym);
     }
 
     public List<AttendanceRecord> findRecordsForEmployeeMonth(String empNo, YearMonth ym) {
-        return AttendanceUtil.loadRecordsForEmployeeMonth(empNo, ym);
+        return AttendanceRepository.findRecordsForEmployeeMonth(empNo, ym);
     }
 
     public AttendanceUtil.AttendanceSummary summarizeForEmployeeMonth(String empNo, YearMonth ym) {
-        return AttendanceUtil.summarizeForEmployeeMonth(empNo, ym);
+        return AttendanceRepository.summarizeForEmployeeMonth(empNo, ym);
+    }
+
+    public Map<String, AttendanceUtil.AttendanceSummary> summarizeAllForMonth(YearMonth ym) {
+        return AttendanceRepository.summarizeAllForMonth(ym);
     }
 
     /*
@@ -32,7 +39,7 @@ public class AttendanceDao {
      */
     public void add(AttendanceRecord record) {
         try {
-            AttendanceUtil.addRecord(record);
+            AttendanceRepository.add(record);
         } catch (IOException e) {
             throw new RuntimeException("Failed to add attendance record.", e);
         }
@@ -40,7 +47,7 @@ public class AttendanceDao {
 
     public void update(AttendanceRecord oldKey, AttendanceRecord updated) {
         try {
-            AttendanceUtil.updateRecord(oldKey, updated);
+            AttendanceRepository.update(oldKey, updated);
         } catch (IOException e) {
             throw new RuntimeException("Failed to update attendance record.", e);
         }
@@ -48,7 +55,7 @@ public class AttendanceDao {
 
     public void delete(AttendanceRecord key) {
         try {
-            AttendanceUtil.deleteRecord(key);
+            AttendanceRepository.delete(key);
         } catch (IOException e) {
             throw new RuntimeException("Failed to delete attendance record.", e);
         }
@@ -1,28 +1,29 @@
 package motorph.dao;
 
 import motorph.model.Employee;
-import motorph.util.CSVUtil;
+import motorph.util.EmployeeRepository;
 
 import java.util.List;
 
 /*
  * This DAO class handles employee data access.
- * It uses CSVUtil to load, save, and find employee records.
+ * It uses EmployeeRepository, which keeps employees.csv in memory,
+ * to load, save, and find employee records.
  */
 public class EmployeeDao {
 
     public List<Employee> findAll() {
-        return CSVUtil.loadEmployees();
+        return EmployeeRepository.findAll();
     }
 
     public void saveAll(List<Employee> employees) {
-        CSVUtil.saveEmployees(employees);
+        EmployeeRepository.saveAll(employees);
     }
 
     /*
      * This method finds a specific employee using the employee number.
      */
     public Employee findByEmployeeNumber(String empNo) {
-        return CSVUtil.findEmployeeByNumber(empNo);
+        return EmployeeRepository.findByEmployeeNumber(empNo);
     }
 }
\ No newline at end of file
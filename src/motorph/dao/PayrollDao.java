@@ -1,7 +1,10 @@
 package motorph.dao;
 
 import motorph.model.PayrollRecord;
+import motorph.model.YearEndAdjustment;
 import motorph.util.PayrollIOUtil;
+import motorph.util.PayrollPeriodIOUtil;
+import motorph.util.YearEndEngine;
 
 import java.time.YearMonth;
 import java.util.List;
@@ -19,6 +22,29 @@ public class PayrollDao {
         PayrollIOUtil.appendPayrollRecord(record);
     }
 
+    /*
+     * This method saves a whole payroll run at once, replacing older rows
+     * of the same employee and month.
+     */
+    public void saveAll(List<PayrollRecord> records) {
+        PayrollIOUtil.savePayrollRecords(records);
+    }
+
+    /*
+     * This method saves the records of a semi-monthly pay period run.
+     */
+    public void savePeriodRecords(List<PayrollRecord> records) {
+        PayrollPeriodIOUtil.savePeriodRecords(records);
+    }
+
+    /*
+     * This method saves the year-end adjustments of a year in one batch,
+     * replacing the adjustments saved before for the same year.
+     */
+    public void saveYearEnd(int year, List<YearEndAdjustment> adjustments) {
+        YearEndEngine.save(year, adjustments);
+    }
+
     /*
      * This method retrieves the latest payroll record of an employee.
      */
@@ -29,4 +55,8 @@ public class PayrollDao {
     public List<PayrollRecord> findForEmployeeMonth(String empNo, YearMonth ym) {
         return PayrollIOUtil.loadPayrollRecordsForEmployeeMonth(empNo, ym);
     }
+
+    public List<PayrollRecord> findForMonth(YearMonth ym) {
+        return PayrollIOUtil.loadPayrollRecordsForMonth(ym);
+    }
 }
\ No newline at end of file
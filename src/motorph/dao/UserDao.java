@@ -1,18 +1,18 @@
 package motorph.dao;
 
 import motorph.model.User;
-import motorph.util.UserIOUtil;
+import motorph.util.UserDirectory;
 
 import java.util.List;
 
 /*
  * This DAO class handles user data access.
- * It loads users from the CSV file using UserIOUtil.
+ * It reads users through UserDirectory, which keeps users.csv in memory.
  */
 public class UserDao {
 
     public List<User> findAll() {
-        return UserIOUtil.loadUsers();
+        return UserDirectory.findAll();
     }
 
     /*
@@ -20,13 +20,6 @@ public class UserDao {
      * It compares usernames ignoring uppercase or lowercase.
      */
     public User findByUsername(String username) {
-        if (username == null) return null;
-
-        for (User u : findAll()) {
-            if (username.equalsIgnoreCase(u.getUsername())) {
-                return u;
-            }
-        }
-        return null;
+        return UserDirectory.findByUsername(username);
     }
 }
\ No newline at end of file
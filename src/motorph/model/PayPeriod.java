@@ -0,0 +1,110 @@
+package motorph.model;
+
+/*
+ * This class represents one semi-monthly pay period:
+ * the first cutoff (day 1 to 15) or the second cutoff (day 16 to the end)
+ * of a month. It is written as "2024-06-1" and "2024-06-2".
+ */
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+public final class PayPeriod implements Comparable<PayPeriod> {
+
+    // Last day of the first cutoff
+    public static final int CUTOFF_DAY = 15;
+
+    public enum Half { FIRST, SECOND }
+
+    private final YearMonth month;
+    private final Half half;
+
+    private PayPeriod(YearMonth month, Half half) {
+        this.month = month;
+        this.half = half;
+    }
+
+    public static PayPeriod of(YearMonth month, Half half) {
+        if (month == null || half == null) throw new IllegalArgumentException("Month and half are required.");
+        return new PayPeriod(month, half);
+    }
+
+    public static PayPeriod firstHalf(YearMonth month) {
+        return of(month, Half.FIRST);
+    }
+
+    public static PayPeriod secondHalf(YearMonth month) {
+        return of(month, Half.SECOND);
+    }
+
+    /*
+     * This returns the pay period that the date falls in.
+     */
+    public static PayPeriod containing(LocalDate date) {
+        return of(YearMonth.from(date), date.getDayOfMonth() <= CUTOFF_DAY ? Half.FIRST : Half.SECOND);
+    }
+
+    /*
+     * This reads a period written by toString, such as "2024-06-2".
+     */
+    public static PayPeriod parse(String text) {
+        String s = text.trim();
+        int sep = s.lastIndexOf('-');
+        if (sep < 0) throw new IllegalArgumentException("Invalid pay period: " + text);
+
+        YearMonth month = YearMonth.parse(s.substring(0, sep));
+        switch (s.substring(sep + 1)) {
+            case "1": return firstHalf(month);
+            case "2": return secondHalf(month);
+            default: throw new IllegalArgumentException("Invalid pay period: " + text);
+        }
+    }
+
+    public YearMonth getMonth() { return month; }
+    public Half getHalf() { return half; }
+
+    public boolean isFirstHalf() {
+        return half == Half.FIRST;
+    }
+
+    public LocalDate getStartDate() {
+        return isFirstHalf() ? month.atDay(1) : month.atDay(CUTOFF_DAY + 1);
+    }
+
+    public LocalDate getEndDate() {
+        return isFirstHalf() ? month.atDay(CUTOFF_DAY) : month.atEndOfMonth();
+    }
+
+    public boolean contains(LocalDate date) {
+        return date != null && !date.isBefore(getStartDate()) && !date.isAfter(getEndDate());
+    }
+
+    public PayPeriod next() {
+        return isFirstHalf() ? secondHalf(month) : firstHalf(month.plusMonths(1));
+    }
+
+    @Override
+    public int compareTo(PayPeriod o) {
+        int c = month.compareTo(o.month);
+        return c != 0 ? c : half.compareTo(o.half);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PayPeriod)) return false;
+
+        PayPeriod p = (PayPeriod) o;
+        return month.equals(p.month) && half == p.half;
+    }
+
+    @Override
+    public int hashCode() {
+        return month.hashCode() * 2 + half.ordinal();
+    }
+
+    @Override
+    public String toString() {
+        return month + (isFirstHalf() ? "-1" : "-2");
+    }
+}
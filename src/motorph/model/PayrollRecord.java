@@ -13,6 +13,7 @@ public class PayrollRecord {
     private String employeeNumber;
     private String employeeName;
     private YearMonth month;
+    private PayPeriod period; // null for a monthly record
 
     private double monthlyBasicSalary;
     private double totalAllowancesMonthly;
@@ -41,6 +42,9 @@ public class PayrollRecord {
     public YearMonth getMonth() { return month; }
     public void setMonth(YearMonth month) { this.month = month; }
 
+    public PayPeriod getPeriod() { return period; }
+    public void setPeriod(PayPeriod period) { this.period = period; }
+
     public double getMonthlyBasicSalary() { return monthlyBasicSalary; }
     public void setMonthlyBasicSalary(double monthlyBasicSalary) { this.monthlyBasicSalary = monthlyBasicSalary; }
 
@@ -0,0 +1,67 @@
+package motorph.model;
+
+/*
+ * This class represents an employee's year-end payroll adjustment.
+ * It stores the year's totals taken from the monthly payroll records,
+ * the 13th month pay, the annual income tax due, and the difference
+ * between that tax and the tax already withheld during the year.
+ * A positive tax adjustment is still to be withheld; a negative one is refunded.
+ */
+
+public class YearEndAdjustment {
+    private int year;
+    private String employeeNumber;
+    private String employeeName;
+    private int monthsPaid;
+
+    private double basicEarned;
+    private double grossPay;
+    private double totalGovDeductions;
+    private double taxableIncome;
+
+    private double thirteenthMonthPay;
+    private double taxableThirteenthMonth; // the part above the tax-exempt ceiling
+
+    private double annualTaxDue;
+    private double taxWithheld;
+    private double taxAdjustment;
+
+    public int getYear() { return year; }
+    public void setYear(int year) { this.year = year; }
+
+    public String getEmployeeNumber() { return employeeNumber; }
+    public void setEmployeeNumber(String employeeNumber) { this.employeeNumber = employeeNumber; }
+
+    public String getEmployeeName() { return employeeName; }
+    public void setEmployeeName(String employeeName) { this.employeeName = employeeName; }
+
+    public int getMonthsPaid() { return monthsPaid; }
+    public void setMonthsPaid(int monthsPaid) { this.monthsPaid = monthsPaid; }
+
+    public double getBasicEarned() { return basicEarned; }
+    public void setBasicEarned(double basicEarned) { this.basicEarned = basicEarned; }
+
+    public double getGrossPay() { return grossPay; }
+    public void setGrossPay(double grossPay) { this.grossPay = grossPay; }
+
+    public double getTotalGovDeductions() { return totalGovDeductions; }
+    public void setTotalGovDeductions(double totalGovDeductions) { this.totalGovDeductions = totalGovDeductions; }
+
+    public double getTaxableIncome() { return taxableIncome; }
+    public void setTaxableIncome(double taxableIncome) { this.taxableIncome = taxableIncome; }
+
+    public double getThirteenthMonthPay() { return thirteenthMonthPay; }
+    public void setThirteenthMonthPay(double thirteenthMonthPay) { this.thirteenthMonthPay = thirteenthMonthPay; }
+
+    public double getTaxableThirteenthMonth() { return taxableThirteenthMonth; }
+    public void setTaxableThirteenthMonth(double taxableThirteenthMonth) { this.taxableThirteenthMonth = taxableThirteenthMonth; }
+
+    public double getAnnualTaxDue() { return annualTaxDue; }
+    public void setAnnualTaxDue(double annualTaxDue) { this.annualTaxDue = annualTaxDue; }
+
+    public double getTaxWithheld() { return taxWithheld; }
+    public void setTaxWithheld(double taxWithheld) { this.taxWithheld = taxWithheld; }
+
+    public double getTaxAdjustment() { return taxAdjustment; }
+    public void setTaxAdjustment(double taxAdjustment) { this.taxAdjustment = taxAdjustment; }
+}
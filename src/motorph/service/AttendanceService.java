@@ -5,11 +5,13 @@ import motorph.model.AttendanceEntry;
 import motorph.model.AttendanceRecord;
 import motorph.model.Employee;
 import motorph.util.AttendanceUtil;
+import motorph.util.PayrollDirtyTracker;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
 
 /*
  * This service class handles the attendance-related business logic.
@@ -36,6 +38,14 @@ public class AttendanceService {
         return attendanceDao.summarizeForEmployeeMonth(empNo, ym);
     }
 
+    /*
+     * This summarizes the attendance of every employee for one month,
+     * keyed by employee number.
+     */
+    public Map<String, AttendanceUtil.AttendanceSummary> summarizeAllForMonth(YearMonth ym) {
+        return attendanceDao.summarizeAllForMonth(ym);
+    }
+
     /*
      * This method checks the employee's attendance record for today.
      */
@@ -76,6 +86,7 @@ public class AttendanceService {
         );
 
         attendanceDao.add(record);
+        markDirty(record);
     }
 
     /*
@@ -107,6 +118,7 @@ public class AttendanceService {
         );
 
         attendanceDao.update(today, updated);
+        markDirty(updated);
     }
 
     /*
@@ -115,6 +127,7 @@ public class AttendanceService {
      */
     public void addRecord(AttendanceRecord record) {
         attendanceDao.add(record);
+        markDirty(record);
     }
 
     /*
@@ -122,6 +135,8 @@ public class AttendanceService {
      */
     public void updateRecord(AttendanceRecord oldKey, AttendanceRecord updated) {
         attendanceDao.update(oldKey, updated);
+        markDirty(oldKey);
+        markDirty(updated);
     }
 
     /*
@@ -129,6 +144,7 @@ public class AttendanceService {
      */
     public void deleteRecord(AttendanceRecord key) {
         attendanceDao.delete(key);
+        markDirty(key);
     }
 
     /*
@@ -146,6 +162,16 @@ public class AttendanceService {
         return AttendanceUtil.computeWorkedHours(in, out);
     }
 
+    /*
+     * This marks the record's employee and month so the payroll screen
+     * computes only that employee again.
+     */
+    private void markDirty(AttendanceRecord r) {
+        if (r.getDate() != null) {
+            PayrollDirtyTracker.markDirty(r.getEmployeeNumber(), YearMonth.from(r.getDate()));
+        }
+    }
+
     /*
      * This helper method returns the current time without seconds and nanoseconds.
      * This keeps the recorded time cleaner and more consistent.
@@ -2,10 +2,18 @@ package motorph.service;
 
 import motorph.dao.PayrollDao;
 import motorph.model.Employee;
+import motorph.model.PayPeriod;
 import motorph.model.PayrollRecord;
-import motorph.util.DefaultPayrollService;
+import motorph.model.YearEndAdjustment;
+import motorph.util.ParallelPayrollService;
 import motorph.util.PayrollIOUtil;
+import motorph.util.PayrollRangeResult;
+import motorph.util.PayrollRunListener;
+import motorph.util.PayrollRunDiff;
+import motorph.util.PayrollRunPipeline;
 import motorph.util.PayrollService;
+import motorph.util.PayrollSimulation;
+import motorph.util.YearEndEngine;
 
 import java.time.YearMonth;
 import java.util.List;
@@ -19,8 +27,16 @@ public class PayrollAppService {
     private final PayrollService payrollService; // uses your existing interface
     private final PayrollDao payrollDao;
 
+    /*
+     * The parallel engine gives the same records as DefaultPayrollService,
+     * but month-end runs for large headcounts use all CPU cores.
+     */
     public PayrollAppService() {
-        this.payrollService = new DefaultPayrollService();
+        this(new ParallelPayrollService());
+    }
+
+    public PayrollAppService(PayrollService payrollService) {
+        this.payrollService = payrollService;
         this.payrollDao = new PayrollDao();
     }
 
@@ -38,10 +54,95 @@ public class PayrollAppService {
         return payrollService.computeForAllEmployeesMonth(employees, ym);
     }
 
+    /*
+     * This method computes the same run, but reports each employee
+     * to the listener as soon as it is computed.
+     */
+    public void computeForAllEmployeesMonth(List<Employee> employees, YearMonth ym, PayrollRunListener listener) {
+        payrollService.computeForAllEmployeesMonth(employees, ym, listener);
+    }
+
+    /*
+     * This method computes the payroll of all employees for every month
+     * from one month to another, both included, in one run. The result has
+     * each month's records and every employee's totals over the range.
+     */
+    public PayrollRangeResult computeForAllEmployeesRange(List<Employee> employees, YearMonth from, YearMonth to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("The start month must not be after the end month.");
+        }
+        return payrollService.computeForAllEmployeesRange(employees, from, to);
+    }
+
+    /*
+     * This method computes January up to the given month of the same year.
+     */
+    public PayrollRangeResult computeYearToDate(List<Employee> employees, YearMonth upTo) {
+        return computeForAllEmployeesRange(employees, YearMonth.of(upTo.getYear(), 1), upTo);
+    }
+
+    /*
+     * This method takes a snapshot of the employees and the month's attendance
+     * for what-if runs. Scenarios run on it are never saved or cached.
+     */
+    public PayrollSimulation createSimulation(List<Employee> employees, YearMonth ym) {
+        return new PayrollSimulation(employees, ym);
+    }
+
+    /*
+     * These methods compute the payroll of one semi-monthly pay period,
+     * for one employee or for all employees.
+     */
+    public PayrollRecord computeForEmployeePeriod(Employee emp, PayPeriod period) {
+        return payrollService.computeForEmployeePeriod(emp, period);
+    }
+
+    public List<PayrollRecord> computeForAllEmployeesPeriod(List<Employee> employees, PayPeriod period) {
+        return payrollService.computeForAllEmployeesPeriod(employees, period);
+    }
+
+    /*
+     * This method saves the records of a pay period run, so the second-half
+     * run can settle the month against what the first half paid.
+     */
+    public void savePeriodRecords(List<PayrollRecord> records) {
+        payrollDao.savePeriodRecords(records);
+    }
+
+    /*
+     * This method computes the year-end adjustment of every employee paid
+     * in the year: 13th month pay, annual income tax due, and the tax still
+     * to be withheld or refunded. It works from the saved monthly records.
+     */
+    public List<YearEndAdjustment> computeYearEnd(int year) {
+        return YearEndEngine.compute(year);
+    }
+
+    public void saveYearEnd(int year, List<YearEndAdjustment> adjustments) {
+        payrollDao.saveYearEnd(year, adjustments);
+    }
+
+    /*
+     * This method computes and saves a whole month in batches, with a
+     * checkpoint after each saved batch. If an earlier run of the month
+     * stopped part way, this one continues after its last saved batch.
+     */
+    public PayrollRunPipeline.Result runAndSaveMonth(List<Employee> employees, YearMonth ym) {
+        return new PayrollRunPipeline(payrollService).run(employees, ym);
+    }
+
     public void saveRecord(PayrollRecord record) {
         payrollDao.append(record);
     }
 
+    /*
+     * This method saves all records of a monthly run in one batch.
+     * Records of the same employee and month that were saved before are replaced.
+     */
+    public void saveRecords(List<PayrollRecord> records) {
+        payrollDao.saveAll(records);
+    }
+
     public PayrollRecord findLatestForEmployee(String empNo) {
         return payrollDao.findLatestForEmployee(empNo);
     }
@@ -50,6 +151,28 @@ public class PayrollAppService {
         return payrollDao.findForEmployeeMonth(empNo, ym);
     }
 
+    /*
+     * This method returns the saved payroll of a month, the latest row of each employee.
+     */
+    public List<PayrollRecord> getPayrollRecordsForMonth(YearMonth ym) {
+        return payrollDao.findForMonth(ym);
+    }
+
+    /*
+     * This method compares two runs of a month, for example the saved records
+     * against a new run, and reports which employees changed and by how much.
+     */
+    public PayrollRunDiff.Result compareRuns(List<PayrollRecord> before, List<PayrollRecord> after) {
+        return PayrollRunDiff.compare(before, after);
+    }
+
+    /*
+     * This method compares the saved payroll of a month with a run that was not saved.
+     */
+    public PayrollRunDiff.Result compareWithSaved(YearMonth ym, List<PayrollRecord> run) {
+        return PayrollRunDiff.compare(getPayrollRecordsForMonth(ym), run);
+    }
+
     public String formatPayslipText(PayrollRecord pr) {
         return PayrollIOUtil.formatPayslipText(pr);
     }
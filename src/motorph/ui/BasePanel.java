@@ -3,13 +3,34 @@ package motorph.ui;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /*
  * This abstract class serves as a base panel for other UI panels.
  * It provides common colors, layout, and reusable UI helper methods.
+ *
+ * It also lets a panel load its data in the background: the file work runs
+ * on a shared loader thread and the result is applied on the Event Dispatch
+ * Thread, so the window never freezes while CSV files are read.
  */
 public abstract class BasePanel extends JPanel {
 
+    // Shared background threads that load data for all panels
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "panel-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Raised on every new load or cancel, so older results are thrown away.
+    // Only read and written on the Event Dispatch Thread.
+    private long loadGeneration = 0;
+    private Future<?> pendingLoad;
+
     // These are shared color constants used for a consistent UI design
     protected static final Color BG = new Color(245, 247, 252);
     protected static final Color CARD_BG = Color.WHITE;
@@ -49,4 +70,59 @@ public abstract class BasePanel extends JPanel {
         l.setForeground(MUTED);
         return l;
     }
+
+    /*
+     * This reloads the data shown by the panel.
+     * It is called every time the panel is opened.
+     */
+    public abstract void refreshData();
+
+    /*
+     * This runs load in the background and then passes its result to apply
+     * on the Event Dispatch Thread. Starting a new load cancels the previous one,
+     * and a result that arrives after cancelLoad() is ignored.
+     */
+    protected <T> void loadAsync(Callable<T> load, Consumer<T> apply) {
+        cancelLoad();
+        long generation = loadGeneration;
+
+        pendingLoad = LOADER.submit(() -> {
+            try {
+                T data = load.call();
+                SwingUtilities.invokeLater(() -> {
+                    if (generation != loadGeneration) return;
+                    pendingLoad = null;
+                    apply.accept(data);
+                });
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (generation != loadGeneration) return;
+                    pendingLoad = null;
+                    loadFailed(e);
+                });
+            }
+        });
+    }
+
+    /*
+     * This stops waiting for the current load, for example when the user
+     * opens another screen. A load that has not started yet is dropped.
+     * A running load is not interrupted, because the data classes cache
+     * what they read, but its result is no longer applied.
+     */
+    public void cancelLoad() {
+        loadGeneration++;
+        if (pendingLoad != null) {
+            pendingLoad.cancel(false);
+            pendingLoad = null;
+        }
+    }
+
+    /*
+     * This is called on the Event Dispatch Thread when a load fails.
+     */
+    protected void loadFailed(Exception e) {
+        e.printStackTrace();
+        JOptionPane.showMessageDialog(this, "Failed to load data: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+    }
 }
\ No newline at end of file
@@ -14,14 +14,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
-public class DashboardPanel extends JPanel {
-
-    // These colors are used for the dashboard theme
-    private static final Color BG = new Color(245, 247, 252);
-    private static final Color CARD_BG = Color.WHITE;
-    private static final Color BORDER = new Color(225, 230, 240);
-    private static final Color TEXT = new Color(28, 35, 50);
-    private static final Color MUTED = new Color(110, 120, 140);
+public class DashboardPanel extends BasePanel {
 
     private JLabel lastUpdatedVal;
 
@@ -37,14 +30,10 @@ public class DashboardPanel extends JPanel {
     private DefaultTableModel recentModel;
 
     public DashboardPanel() {
-        setLayout(new BorderLayout(14, 14));
-        setBackground(BG);
-        setBorder(new EmptyBorder(18, 18, 18, 18));
-
         add(buildHeader(), BorderLayout.NORTH);
         add(buildBody(), BorderLayout.CENTER);
 
-        refreshDashboard();
+        refreshData();
     }
 
     private JComponent buildHeader() {
@@ -68,7 +57,7 @@ public class DashboardPanel extends JPanel {
 
         JButton refreshBtn = new JButton("Refresh");
         refreshBtn.setFocusPainted(false);
-        refreshBtn.addActionListener(e -> refreshDashboard());
+        refreshBtn.addActionListener(e -> refreshData());
 
         lastUpdatedVal = new JLabel("Last updated: -");
         lastUpdatedVal.setFont(new Font("Arial", Font.PLAIN, 12));
@@ -300,10 +289,8 @@ public class DashboardPanel extends JPanel {
         return card;
     }
 
-    // This method refreshes all dashboard data and updates the UI
-    private void refreshDashboard() {
-        List<Employee> employees = employeeService.getAllEmployees();
-
+    // This method shows the loaded dashboard data in the UI
+    private void showDashboard(List<Employee> employees) {
         int total = employees.size();
         int regular = 0;
         int probationary = 0;
@@ -364,7 +351,8 @@ public class DashboardPanel extends JPanel {
 
     private void refreshSystemStatus() {
         employeesCsvVal.setText(fileExists("data/employees.csv") ? "FOUND" : "MISSING");
-        attendanceCsvVal.setText(fileExists("data/attendance.csv") ? "FOUND" : "MISSING");
+        // Attendance may also be stored as month files in data/attendance
+        attendanceCsvVal.setText(fileExists("data/attendance.csv") || fileExists("data/attendance") ? "FOUND" : "MISSING");
     }
 
     private boolean fileExists(String path) {
@@ -379,7 +367,12 @@ public class DashboardPanel extends JPanel {
         }
     }
 
+    /*
+     * This loads the employee list in the background
+     * and then refreshes all dashboard values.
+     */
+    @Override
     public void refreshData() {
-        refreshDashboard();
+        loadAsync(employeeService::getAllEmployees, this::showDashboard);
     }
 }
\ No newline at end of file
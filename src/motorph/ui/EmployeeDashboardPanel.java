@@ -11,20 +11,12 @@ import motorph.service.PayrollAppService;
 import motorph.util.Session;
 
 import javax.swing.*;
-import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
-public class EmployeeDashboardPanel extends JPanel {
-
-    // Theme colors used for the employee dashboard UI
-    private static final Color BG = new Color(245, 247, 252);
-    private static final Color CARD_BG = Color.WHITE;
-    private static final Color BORDER = new Color(225, 230, 240);
-    private static final Color TEXT = new Color(28, 35, 50);
-    private static final Color MUTED = new Color(110, 120, 140);
+public class EmployeeDashboardPanel extends BasePanel {
 
     private JLabel lastUpdatedVal;
 
@@ -47,10 +39,6 @@ public class EmployeeDashboardPanel extends JPanel {
     private final PayrollAppService payrollAppService = new PayrollAppService();
 
     public EmployeeDashboardPanel() {
-        setLayout(new BorderLayout(14, 14));
-        setBackground(BG);
-        setBorder(new EmptyBorder(18, 18, 18, 18));
-
         add(buildHeader(), BorderLayout.NORTH);
         add(buildBody(), BorderLayout.CENTER);
 
@@ -168,16 +156,6 @@ public class EmployeeDashboardPanel extends JPanel {
         return l;
     }
 
-    private JPanel cardWrap() {
-        JPanel card = new JPanel();
-        card.setBackground(CARD_BG);
-        card.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(BORDER),
-                new EmptyBorder(14, 14, 14, 14)
-        ));
-        return card;
-    }
-
     private JComponent profileCard() {
         JPanel card = cardWrap();
         card.setLayout(new BorderLayout(10, 10));
@@ -364,8 +342,11 @@ public class EmployeeDashboardPanel extends JPanel {
     /*
      * This method refreshes all employee dashboard data,
      * including profile, leave summary, payroll, and attendance.
+     * The data is loaded in the background and shown once it is ready.
      */
     private void refresh() {
+        cancelLoad(); // results for an earlier user must not show up
+
         User u = Session.getCurrentUser();
         if (u == null || !u.isEmployee()) {
             empNoVal.setText("-");
@@ -390,7 +371,30 @@ public class EmployeeDashboardPanel extends JPanel {
         }
 
         String empNo = u.getEmployeeNumber();
-        Employee emp = employeeService.getEmployeeByNumber(empNo);
+        loadAsync(() -> loadSnapshot(empNo), snapshot -> showSnapshot(u, snapshot));
+    }
+
+    // This holds everything the employee dashboard shows for one refresh
+    private static class Snapshot {
+        Employee emp;
+        LeaveService.LeaveSummary leaveSummary;
+        PayrollRecord latest;
+        AttendanceRecord today;
+    }
+
+    // This runs in the background and does all the file reading
+    private Snapshot loadSnapshot(String empNo) {
+        Snapshot s = new Snapshot();
+        s.emp = employeeService.getEmployeeByNumber(empNo);
+        s.leaveSummary = leaveService.summarizeForEmployee(empNo);
+        s.latest = payrollAppService.findLatestForEmployee(empNo);
+        s.today = attendanceService.getTodayRecord(empNo);
+        return s;
+    }
+
+    private void showSnapshot(User u, Snapshot snapshot) {
+        String empNo = u.getEmployeeNumber();
+        Employee emp = snapshot.emp;
 
         if (emp != null) {
             empNoVal.setText(emp.getEmployeeNumber());
@@ -405,7 +409,7 @@ public class EmployeeDashboardPanel extends JPanel {
         }
 
         int pending = 0, approved = 0, denied = 0;
-        LeaveService.LeaveSummary leaveSummary = leaveService.summarizeForEmployee(empNo);
+        LeaveService.LeaveSummary leaveSummary = snapshot.leaveSummary;
         pending = leaveSummary.pending;
         approved = leaveSummary.approved;
         denied = leaveSummary.denied;
@@ -413,7 +417,7 @@ public class EmployeeDashboardPanel extends JPanel {
         approvedVal.setText(String.valueOf(approved));
         deniedVal.setText(String.valueOf(denied));
 
-        PayrollRecord latest = payrollAppService.findLatestForEmployee(empNo);
+        PayrollRecord latest = snapshot.latest;
         if (latest == null) {
             payrollMonthVal.setText("No records");
             grossVal.setText("-");
@@ -428,7 +432,7 @@ public class EmployeeDashboardPanel extends JPanel {
             netVal.setText(money(latest.getNetPay()));
         }
 
-        refreshAttendance(empNo);
+        showAttendance(snapshot.today);
 
         lastUpdatedVal.setText("Last updated: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
     }
@@ -437,11 +441,9 @@ public class EmployeeDashboardPanel extends JPanel {
      * This updates the attendance card based on today's record.
      * It also enables or disables the Time In and Time Out buttons properly.
      */
-    private void refreshAttendance(String empNo) {
+    private void showAttendance(AttendanceRecord today) {
         attDateVal.setText(String.valueOf(LocalDate.now()));
 
-        AttendanceRecord today = attendanceService.getTodayRecord(empNo);
-
         if (today == null) {
             attStatusVal.setText("Not yet timed in");
             timeInVal.setText("-");
@@ -480,6 +482,7 @@ public class EmployeeDashboardPanel extends JPanel {
         }
     }
 
+    @Override
     public void refreshData() {
         refresh();
     }
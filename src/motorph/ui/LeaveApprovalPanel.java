@@ -11,14 +11,7 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.List;
 
-public class LeaveApprovalPanel extends JPanel {
-
-    // Theme colors used for the panel UI
-    private static final Color BG = new Color(245, 247, 252);
-    private static final Color CARD_BG = Color.WHITE;
-    private static final Color BORDER = new Color(225, 230, 240);
-    private static final Color TEXT = new Color(28, 35, 50);
-    private static final Color MUTED = new Color(110, 120, 140);
+public class LeaveApprovalPanel extends BasePanel {
 
     private DefaultTableModel model;
     private JTable table;
@@ -32,10 +25,6 @@ public class LeaveApprovalPanel extends JPanel {
     private final LeaveService leaveService = new LeaveService();
 
     public LeaveApprovalPanel() {
-        setLayout(new BorderLayout(14, 14));
-        setBackground(BG);
-        setBorder(new EmptyBorder(18, 18, 18, 18));
-
         add(header(), BorderLayout.NORTH);
         add(body(), BorderLayout.CENTER);
 
@@ -171,7 +160,9 @@ public class LeaveApprovalPanel extends JPanel {
      * This reloads all leave requests from storage
      * and updates the table display.
      */
+    @Override
     public void refreshData() {
+        cancelLoad();
         model.setRowCount(0);
 
         if (reasonViewer != null) {
@@ -182,7 +173,11 @@ public class LeaveApprovalPanel extends JPanel {
         User u = Session.getCurrentUser();
         if (u == null || !(u.isAdmin() || u.isHr())) return;
 
-        cached = leaveService.getAllRequests();
+        loadAsync(leaveService::getAllRequests, this::showRequests);
+    }
+
+    private void showRequests(List<LeaveRequest> requests) {
+        cached = requests;
 
         for (LeaveRequest r : cached) {
             model.addRow(new Object[]{
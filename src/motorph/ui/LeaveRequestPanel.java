@@ -8,7 +8,6 @@ import motorph.service.LeaveService;
 import motorph.util.Session;
 
 import javax.swing.*;
-import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.time.LocalDate;
@@ -16,14 +15,7 @@ import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
-public class LeaveRequestPanel extends JPanel {
-
-    // Theme colors used in the panel
-    private static final Color BG = new Color(245, 247, 252);
-    private static final Color CARD_BG = Color.WHITE;
-    private static final Color BORDER = new Color(225, 230, 240);
-    private static final Color TEXT = new Color(28, 35, 50);
-    private static final Color MUTED = new Color(110, 120, 140);
+public class LeaveRequestPanel extends BasePanel {
 
     private final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
@@ -44,10 +36,6 @@ public class LeaveRequestPanel extends JPanel {
     private DefaultTableModel model;
 
     public LeaveRequestPanel() {
-        setLayout(new BorderLayout(14, 14));
-        setBackground(BG);
-        setBorder(new EmptyBorder(18, 18, 18, 18));
-
         add(header(), BorderLayout.NORTH);
         add(body(), BorderLayout.CENTER);
 
@@ -319,12 +307,17 @@ public class LeaveRequestPanel extends JPanel {
      * and displays them in the table.
      */
     private void refresh() {
+        cancelLoad();
         model.setRowCount(0);
 
         User u = Session.getCurrentUser();
         if (u == null || !u.isEmployee()) return;
 
-        List<LeaveRequest> list = leaveService.getRequestsForEmployee(u.getEmployeeNumber());
+        String empNo = u.getEmployeeNumber();
+        loadAsync(() -> leaveService.getRequestsForEmployee(empNo), this::showRequests);
+    }
+
+    private void showRequests(List<LeaveRequest> list) {
         for (LeaveRequest r : list) {
             model.addRow(new Object[]{
                     r.getRequestId(),
@@ -347,16 +340,6 @@ public class LeaveRequestPanel extends JPanel {
         return l;
     }
 
-    private JPanel cardWrap() {
-        JPanel card = new JPanel();
-        card.setBackground(CARD_BG);
-        card.setBorder(BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(BORDER),
-                new EmptyBorder(14, 14, 14, 14)
-        ));
-        return card;
-    }
-
     /*
      * This shortens long text so the table stays clean and readable.
      */
@@ -366,6 +349,7 @@ public class LeaveRequestPanel extends JPanel {
         return s.substring(0, max) + "...";
     }
 
+    @Override
     public void refreshData() {
         refresh();
     }
@@ -123,34 +123,38 @@ public class MainFrame extends JFrame {
         }
 
         /*
-         * These refresh calls make sure each screen
-         * shows updated data before it is displayed.
+         * The target screen reloads its data in the background
+         * so it shows updated data without freezing the window.
+         * Loads still running for the other screens are no longer needed.
          */
-        if ("DASHBOARD".equals(screen) && dashboardPanel != null) {
-            dashboardPanel.refreshData();
-        }
-
-        if ("EMPLOYEE_DASHBOARD".equals(screen) && employeeDashboardPanel != null) {
-            employeeDashboardPanel.refreshData();
-        }
+        BasePanel target = refreshablePanel(screen);
+        cancelLoadsExcept(target);
 
-        if ("MY_PAYSLIP".equals(screen) && myPayslipPanel != null) {
-            myPayslipPanel.refreshData();
+        if (target != null) {
+            target.refreshData();
         }
 
-        if ("LEAVE_REQUEST".equals(screen) && leaveRequestPanel != null) {
-            leaveRequestPanel.refreshData();
-        }
+        contentLayout.show(contentCards, screen);
+    }
 
-        if ("LEAVE_APPROVAL".equals(screen) && leaveApprovalPanel != null) {
-            leaveApprovalPanel.refreshData();
+    // This returns the screen's panel if it loads data when opened
+    private BasePanel refreshablePanel(String screen) {
+        switch (screen) {
+            case "DASHBOARD": return dashboardPanel;
+            case "EMPLOYEE_DASHBOARD": return employeeDashboardPanel;
+            case "MY_PAYSLIP": return myPayslipPanel;
+            case "LEAVE_REQUEST": return leaveRequestPanel;
+            case "LEAVE_APPROVAL": return leaveApprovalPanel;
+            case "USER_ACCOUNTS": return userAccountsPanel;
+            default: return null;
         }
+    }
 
-        if ("USER_ACCOUNTS".equals(screen) && userAccountsPanel != null) {
-            userAccountsPanel.refreshData();
+    private void cancelLoadsExcept(BasePanel keep) {
+        for (BasePanel p : new BasePanel[]{dashboardPanel, employeeDashboardPanel, myPayslipPanel,
+                leaveRequestPanel, leaveApprovalPanel, userAccountsPanel}) {
+            if (p != null && p != keep) p.cancelLoad();
         }
-
-        contentLayout.show(contentCards, screen);
     }
 
     /*
@@ -158,6 +162,7 @@ public class MainFrame extends JFrame {
      * back to the login screen.
      */
     public void logout() {
+        cancelLoadsExcept(null);
         Session.clear();
         rootLayout.show(root, "LOGIN");
     }
@@ -12,14 +12,7 @@ import java.awt.*;
 import java.time.YearMonth;
 import java.util.List;
 
-public class MyPayslipPanel extends JPanel {
-
-    // Theme colors used in the payslip panel
-    private static final Color BG = new Color(245, 247, 252);
-    private static final Color CARD_BG = Color.WHITE;
-    private static final Color BORDER = new Color(225, 230, 240);
-    private static final Color TEXT = new Color(28, 35, 50);
-    private static final Color MUTED = new Color(110, 120, 140);
+public class MyPayslipPanel extends BasePanel {
 
     private JComboBox<Integer> yearCombo;
     private JComboBox<String> monthCombo;
@@ -30,10 +23,6 @@ public class MyPayslipPanel extends JPanel {
     private final PayrollAppService payrollAppService = new PayrollAppService();
 
     public MyPayslipPanel() {
-        setLayout(new BorderLayout(14, 14));
-        setBackground(BG);
-        setBorder(new EmptyBorder(18, 18, 18, 18));
-
         add(header(), BorderLayout.NORTH);
         add(body(), BorderLayout.CENTER);
 
@@ -175,15 +164,19 @@ public class MyPayslipPanel extends JPanel {
      * based on the selected year and month.
      */
     private void refresh() {
+        cancelLoad();
         model.setRowCount(0);
         payslipArea.setText("Select a payroll record then click “View Selected”.\n");
 
         User u = Session.getCurrentUser();
         if (u == null || !u.isEmployee()) return;
 
+        String empNo = u.getEmployeeNumber();
         YearMonth ym = getSelectedMonth();
-        List<PayrollRecord> list = payrollAppService.getPayrollRecordsForEmployeeMonth(u.getEmployeeNumber(), ym);
+        loadAsync(() -> payrollAppService.getPayrollRecordsForEmployeeMonth(empNo, ym), this::showRecords);
+    }
 
+    private void showRecords(List<PayrollRecord> list) {
         for (PayrollRecord pr : list) {
             model.addRow(new Object[]{
                     pr.getMonth(),
@@ -230,6 +223,7 @@ public class MyPayslipPanel extends JPanel {
         return String.format("%,.2f", v);
     }
 
+    @Override
     public void refreshData() {
         refresh();
     }
@@ -7,6 +7,10 @@ import motorph.model.PayrollRecord;
 import motorph.service.AttendanceService;
 import motorph.service.EmployeeService;
 import motorph.service.PayrollAppService;
+import motorph.util.MonthlyPayrollSummary;
+import motorph.util.PayrollDirtyTracker;
+import motorph.util.PayrollRunListener;
+import motorph.util.WorkingDayCalendar;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -17,7 +21,11 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class PayrollPanel extends JPanel {
 
@@ -81,6 +89,18 @@ public class PayrollPanel extends JPanel {
     // Monthly summary tab
     private DefaultTableModel monthTableModel;
     private JLabel monthTotalNetVal, monthTotalTaxVal, monthTotalGovVal, monthCountVal;
+    private JProgressBar monthProgress;
+    private JButton computeAllBtn, cancelComputeAllBtn, saveMonthBtn;
+
+    // The Compute All run in progress, or null
+    private ComputeAllWorker computeAllWorker;
+
+    // The background update after timecard changes, or null; a second request waits for it
+    private RecomputeWorker recomputeWorker;
+    private boolean recomputeAgain;
+
+    // The last finished Compute All, kept up to date after timecard changes
+    private MonthlyPayrollSummary monthSummary;
 
     // Timecard tab
     private CardLayout timecardLayout = new CardLayout();
@@ -88,7 +108,7 @@ public class PayrollPanel extends JPanel {
 
     private DefaultTableModel timecardTableModel;
     private JTable timecardTable;
-    private JLabel timecardDaysVal, timecardHoursVal, timecardLateVal;
+    private JLabel timecardDaysVal, timecardHoursVal, timecardLateVal, timecardMissedVal;
 
     private JTextField tcDateField, tcInField, tcOutField;
     private JLabel tcFormTitle;
@@ -160,6 +180,11 @@ public class PayrollPanel extends JPanel {
         tabs.addTab("Monthly Summary", buildMonthlySummaryTab());
         tabs.addTab("Timecard", buildTimecardTab());
 
+        // Timecards changed elsewhere, such as Time In, show up when the summary is opened
+        tabs.addChangeListener(e -> {
+            if (tabs.getSelectedIndex() == 2) recomputeChangedEmployees();
+        });
+
         JPanel tabsCard = createCard(new BorderLayout());
         tabsCard.setBorder(BorderFactory.createCompoundBorder(
                 BorderFactory.createLineBorder(BORDER),
@@ -238,7 +263,7 @@ public class PayrollPanel extends JPanel {
             tabs.setSelectedIndex(3);
         });
 
-        JButton computeAllBtn = new JButton("Compute All Employees (Monthly)");
+        computeAllBtn = new JButton("Compute All Employees (Monthly)");
         computeAllBtn.setFocusPainted(false);
         computeAllBtn.addActionListener(e -> computeAllEmployeesForMonth());
 
@@ -566,6 +591,31 @@ public class PayrollPanel extends JPanel {
         sp.setBorder(BorderFactory.createLineBorder(BORDER));
         panel.add(sp, BorderLayout.CENTER);
 
+        monthProgress = new JProgressBar();
+        monthProgress.setStringPainted(true);
+        monthProgress.setString("Not running");
+
+        cancelComputeAllBtn = new JButton("Cancel");
+        cancelComputeAllBtn.setFocusPainted(false);
+        cancelComputeAllBtn.setEnabled(false);
+        cancelComputeAllBtn.addActionListener(e -> cancelComputeAll());
+
+        saveMonthBtn = new JButton("Save Month");
+        saveMonthBtn.setFocusPainted(false);
+        saveMonthBtn.setEnabled(false);
+        saveMonthBtn.addActionListener(e -> saveMonthRecords());
+
+        JPanel runButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        runButtons.setOpaque(false);
+        runButtons.add(cancelComputeAllBtn);
+        runButtons.add(saveMonthBtn);
+
+        JPanel progressRow = new JPanel(new BorderLayout(8, 8));
+        progressRow.setOpaque(false);
+        progressRow.add(monthProgress, BorderLayout.CENTER);
+        progressRow.add(runButtons, BorderLayout.EAST);
+        panel.add(progressRow, BorderLayout.NORTH);
+
         JPanel totalsCard = new JPanel(new GridLayout(2, 2, 12, 10));
         totalsCard.setBackground(new Color(250, 251, 253));
         totalsCard.setBorder(BorderFactory.createCompoundBorder(
@@ -677,7 +727,7 @@ public class PayrollPanel extends JPanel {
         JScrollPane sp = new JScrollPane(timecardTable);
         sp.setBorder(BorderFactory.createLineBorder(BORDER));
 
-        JPanel totalsCard = new JPanel(new GridLayout(1, 3, 12, 10));
+        JPanel totalsCard = new JPanel(new GridLayout(2, 2, 12, 10));
         totalsCard.setBackground(new Color(250, 251, 253));
         totalsCard.setBorder(BorderFactory.createCompoundBorder(
                 BorderFactory.createLineBorder(BORDER),
@@ -685,12 +735,14 @@ public class PayrollPanel extends JPanel {
         ));
 
         timecardDaysVal = new JLabel("-");
+        timecardMissedVal = new JLabel("-");
         timecardLateVal = new JLabel("-");
         timecardHoursVal = new JLabel("-");
         timecardHoursVal.setFont(new Font("Arial", Font.BOLD, 14));
         timecardHoursVal.setForeground(TEXT);
 
         totalsCard.add(labelPair("Days with Logs:", timecardDaysVal));
+        totalsCard.add(labelPair("Working Days Missed:", timecardMissedVal));
         totalsCard.add(labelPair("Total Late Minutes:", timecardLateVal));
         totalsCard.add(labelPair("Total Worked Hours:", timecardHoursVal));
 
@@ -875,6 +927,7 @@ public class PayrollPanel extends JPanel {
         try {
             attendanceService.deleteRecord(key);
             refreshTimecard(emp.getEmployeeNumber(), getSelectedMonth());
+            recomputeChangedEmployees();
             JOptionPane.showMessageDialog(this, "Timecard record deleted.", "Deleted", JOptionPane.INFORMATION_MESSAGE);
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Delete failed:\n" + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -948,6 +1001,7 @@ public class PayrollPanel extends JPanel {
             }
 
             refreshTimecard(emp.getEmployeeNumber(), getSelectedMonth());
+            recomputeChangedEmployees();
             timecardLayout.show(timecardView, "LIST");
 
         } catch (Exception ex) {
@@ -1006,6 +1060,7 @@ public class PayrollPanel extends JPanel {
         }
 
         timecardDaysVal.setText(String.valueOf(entries.size()));
+        timecardMissedVal.setText(String.valueOf(WorkingDayCalendar.missedWorkingDays(ym, entries)));
         timecardLateVal.setText(String.valueOf(totalLate));
         timecardHoursVal.setText(String.format("%.2f", totalHours));
     }
@@ -1013,6 +1068,7 @@ public class PayrollPanel extends JPanel {
     private void clearTimecard() {
         if (timecardTableModel != null) timecardTableModel.setRowCount(0);
         if (timecardDaysVal != null) timecardDaysVal.setText("-");
+        if (timecardMissedVal != null) timecardMissedVal.setText("-");
         if (timecardLateVal != null) timecardLateVal.setText("-");
         if (timecardHoursVal != null) timecardHoursVal.setText("-");
     }
@@ -1077,50 +1133,379 @@ public class PayrollPanel extends JPanel {
 
     /*
      * This computes payroll for all employees for the selected month
-     * and displays the results in the monthly summary tab.
+     * in the background. Rows and totals in the monthly summary tab
+     * fill in while the run goes, and the run can be cancelled.
      */
     private void computeAllEmployeesForMonth() {
+        clearMonthlySummary();
+
+        // The run reads every timecard of the month, so earlier changes are already in it
         YearMonth ym = getSelectedMonth();
+        PayrollDirtyTracker.clear(ym);
 
-        monthTableModel.setRowCount(0);
+        computeAllWorker = new ComputeAllWorker(employees, ym);
 
-        double totalGov = 0;
-        double totalTax = 0;
-        double totalNet = 0;
+        monthProgress.setMaximum(Math.max(1, employees.size()));
+        monthProgress.setValue(0);
+        monthProgress.setString("Starting...");
+        computeAllBtn.setEnabled(false);
+        cancelComputeAllBtn.setEnabled(true);
+        tabs.setSelectedIndex(2);
 
-        int computedCount = 0;
+        computeAllWorker.execute();
+    }
 
-        for (Employee emp : employees) {
-            PayrollRecord pr = payrollAppService.computeForEmployeeMonth(emp, ym);
-            if (pr == null) continue;
+    /*
+     * This stops the running Compute All. Rows already shown stay in the table.
+     * The worker thread is not interrupted; it stops before the next employee.
+     */
+    private void cancelComputeAll() {
+        if (computeAllWorker == null) return;
 
-            computedCount++;
+        computeAllWorker.cancel(false);
+        computeAllWorker = null;
 
-            double gov = pr.getTotalDeductionsBeforeTax();
-            double tax = pr.getWithholdingTax();
-            double net = pr.getNetPay();
+        computeAllBtn.setEnabled(true);
+        cancelComputeAllBtn.setEnabled(false);
+        monthProgress.setString("Cancelled at " + monthProgress.getValue() + " / " + monthProgress.getMaximum());
+    }
+
+    /*
+     * This worker runs one Compute All. Records are published as each employee
+     * finishes, and process() adds them to the table and running totals on
+     * the Event Dispatch Thread. A worker that was replaced or cancelled
+     * no longer touches the screen.
+     */
+    private class ComputeAllWorker extends SwingWorker<Void, PayrollRecord> implements PayrollRunListener {
+
+        private final List<Employee> runEmployees;
+        private final YearMonth ym;
+        private final long startNanos = System.nanoTime();
 
-            totalGov += gov;
-            totalTax += tax;
-            totalNet += net;
+        private volatile int doneCount;
 
-            monthTableModel.addRow(new Object[]{
-                    pr.getEmployeeNumber(),
-                    pr.getEmployeeName(),
-                    pr.getDaysPresent(),
-                    pr.getLateMinutes(),
-                    money(gov),
-                    money(tax),
-                    money(net)
+        // Published records and running totals, only used on the Event Dispatch Thread
+        private final MonthlyPayrollSummary summary;
+
+        // Employees that could not be computed; written by the run, read in done() after get()
+        private final Map<String, Exception> failures = new LinkedHashMap<>();
+
+        ComputeAllWorker(List<Employee> employees, YearMonth ym) {
+            this.runEmployees = new ArrayList<>(employees);
+            this.ym = ym;
+            this.summary = new MonthlyPayrollSummary(ym);
+
+            addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) showProgress();
             });
         }
 
-        monthCountVal.setText(String.valueOf(computedCount));
-        monthTotalGovVal.setText(money(totalGov));
-        monthTotalTaxVal.setText(money(totalTax));
-        monthTotalNetVal.setText(money(totalNet));
+        @Override
+        protected Void doInBackground() {
+            payrollAppService.computeForAllEmployeesMonth(runEmployees, ym, this);
+            return null;
+        }
 
-        tabs.setSelectedIndex(2);
+        @Override
+        public void employeeDone(int done, int total, PayrollRecord record) {
+            this.doneCount = done;
+            if (record != null) publish(record);
+
+            // Progress events are merged by SwingWorker, so this is cheap per employee
+            setProgress(done * 100 / total);
+        }
+
+        @Override
+        public void employeeFailed(Employee employee, Exception error) {
+            failures.put(employee.getEmployeeNumber(), error);
+        }
+
+        @Override
+        protected void process(List<PayrollRecord> records) {
+            if (computeAllWorker != this) return;
+
+            for (PayrollRecord pr : records) {
+                summary.add(pr);
+                monthTableModel.addRow(monthRowOf(pr));
+            }
+
+            showMonthTotals(summary);
+            showProgress();
+        }
+
+        @Override
+        protected void done() {
+            if (computeAllWorker != this) return;
+            computeAllWorker = null;
+
+            computeAllBtn.setEnabled(true);
+            cancelComputeAllBtn.setEnabled(false);
+
+            try {
+                get();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                monthProgress.setString("Failed at " + doneCount + " / " + runEmployees.size());
+                JOptionPane.showMessageDialog(PayrollPanel.this,
+                        "Failed to compute payroll:\n" + ex.getMessage(),
+                        "Compute Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            showMonthTotals(summary);
+            monthSummary = summary;
+            saveMonthBtn.setEnabled(summary.size() > 0);
+
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            monthProgress.setValue(monthProgress.getMaximum());
+            String doneText = String.format("Done: %d employees in %.1f s", runEmployees.size(), seconds);
+            if (failures.isEmpty()) {
+                monthProgress.setString(doneText);
+            } else {
+                monthProgress.setString(doneText + ", " + failures.size() + " failed (totals are incomplete)");
+                showFailures();
+            }
+
+            // Timecards changed while the run was going may have been read before the change
+            recomputeChangedEmployees();
+        }
+
+        // Lists the employees left out of the run, so the totals are not taken as complete
+        private void showFailures() {
+            StringBuilder sb = new StringBuilder("These employees could not be computed and are not in the totals:\n");
+            int shown = 0;
+            for (Map.Entry<String, Exception> e : failures.entrySet()) {
+                if (shown++ == 10) {
+                    sb.append("... and ").append(failures.size() - 10).append(" more\n");
+                    break;
+                }
+                sb.append(e.getKey()).append(": ").append(e.getValue().getMessage()).append("\n");
+            }
+
+            JOptionPane.showMessageDialog(PayrollPanel.this,
+                    sb.toString(),
+                    "Some Employees Failed",
+                    JOptionPane.WARNING_MESSAGE);
+        }
+
+        private void showProgress() {
+            if (computeAllWorker != this) return;
+
+            int d = doneCount;
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            monthProgress.setValue(d);
+            monthProgress.setString(seconds > 0
+                    ? String.format("%d / %d (%.0f per second)", d, runEmployees.size(), d / seconds)
+                    : d + " / " + runEmployees.size());
+        }
+    }
+
+    /*
+     * This computes again only the employees whose timecards changed since
+     * the last Compute All of the summary's month, and moves the monthly
+     * totals by the difference instead of adding up the whole month.
+     * The selected employee's result is refreshed too if it changed.
+     * The work runs in the background; a call made while one is running
+     * starts another pass when it ends.
+     */
+    private void recomputeChangedEmployees() {
+        if (recomputeWorker != null) {
+            recomputeAgain = true;
+            return;
+        }
+
+        MonthlyPayrollSummary summary = computeAllWorker == null ? monthSummary : null;
+        if (summary == null && (lastRecord == null || lastEmployee == null)) return;
+
+        recomputeWorker = new RecomputeWorker(summary);
+        recomputeWorker.execute();
+    }
+
+    /*
+     * This runs one recompute pass. The results are only applied if the
+     * selected employee and the monthly summary are still the ones the
+     * pass started from.
+     */
+    private class RecomputeWorker extends SwingWorker<Void, Void> {
+        private final MonthlyPayrollSummary summary;
+        private final PayrollRecord startRecord = lastRecord;
+        private final Employee startEmployee = lastEmployee;
+        private final List<Employee> lookup = new ArrayList<>(employees);
+
+        private Set<String> changed = Set.of();
+        private final Map<String, PayrollRecord> results = new LinkedHashMap<>();
+        private PayrollRecord refreshed;
+        private double millis;
+
+        RecomputeWorker(MonthlyPayrollSummary summary) {
+            this.summary = summary;
+        }
+
+        @Override
+        protected Void doInBackground() {
+            if (startRecord != null && startEmployee != null) {
+                // It comes from the result cache unless the employee's timecards for that month changed
+                refreshed = payrollAppService.computeForEmployeeMonth(startEmployee, startRecord.getMonth());
+            }
+
+            if (summary == null) return null;
+
+            YearMonth ym = summary.getMonth();
+            changed = PayrollDirtyTracker.takeDirty(ym);
+
+            long start = System.nanoTime();
+            for (String empNo : changed) {
+                Employee emp = findEmployee(lookup, empNo);
+                results.put(empNo, emp == null ? null : payrollAppService.computeForEmployeeMonth(emp, ym));
+            }
+            millis = (System.nanoTime() - start) / 1e6;
+            return null;
+        }
+
+        @Override
+        protected void done() {
+            recomputeWorker = null;
+
+            try {
+                get();
+                applyLastRecord();
+                applySummary();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+
+                // Keep the changes for the next pass
+                if (summary != null) {
+                    for (String empNo : changed) PayrollDirtyTracker.markDirty(empNo, summary.getMonth());
+                }
+                JOptionPane.showMessageDialog(PayrollPanel.this,
+                        "Failed to update payroll:\n" + ex.getMessage(),
+                        "Compute Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+
+            if (recomputeAgain) {
+                recomputeAgain = false;
+                recomputeChangedEmployees();
+            }
+        }
+
+        private void applyLastRecord() {
+            if (startRecord == null || lastRecord != startRecord || lastEmployee != startEmployee) return;
+
+            if (refreshed == null) {
+                // Every timecard of the month was deleted
+                lastRecord = null;
+                lastEmployee = null;
+                clearComputeView();
+                if (saveRecordBtn != null) saveRecordBtn.setEnabled(false);
+                return;
+            }
+
+            lastRecord = refreshed;
+            updateComputeView(refreshed, lastEmployee);
+            payslipArea.setText(formatPayslip(refreshed, lastEmployee));
+            payslipArea.setCaretPosition(0);
+        }
+
+        private void applySummary() {
+            if (summary == null || changed.isEmpty()) return;
+
+            if (monthSummary != summary || computeAllWorker != null) {
+                // A new Compute All replaced the summary and reads the timecards itself
+                return;
+            }
+
+            for (Map.Entry<String, PayrollRecord> e : results.entrySet()) {
+                summary.replace(e.getKey(), e.getValue());
+                updateMonthRow(e.getKey(), e.getValue());
+            }
+
+            showMonthTotals(summary);
+            saveMonthBtn.setEnabled(summary.size() > 0);
+            monthProgress.setString(String.format("Updated %d changed employee(s) in %.0f ms",
+                    changed.size(), millis));
+        }
+    }
+
+    private static Employee findEmployee(List<Employee> list, String empNo) {
+        for (Employee e : list) {
+            if (empNo.equals(e.getEmployeeNumber())) return e;
+        }
+        return null;
+    }
+
+    // Replaces, adds, or (for a null record) removes the employee's row in the monthly table
+    private void updateMonthRow(String empNo, PayrollRecord pr) {
+        int row = -1;
+        for (int i = 0; i < monthTableModel.getRowCount(); i++) {
+            if (empNo.equals(monthTableModel.getValueAt(i, 0))) {
+                row = i;
+                break;
+            }
+        }
+
+        if (pr == null) {
+            if (row >= 0) monthTableModel.removeRow(row);
+            return;
+        }
+
+        Object[] values = monthRowOf(pr);
+        if (row < 0) {
+            monthTableModel.addRow(values);
+            return;
+        }
+        for (int c = 0; c < values.length; c++) {
+            monthTableModel.setValueAt(values[c], row, c);
+        }
+    }
+
+    private Object[] monthRowOf(PayrollRecord pr) {
+        return new Object[]{
+                pr.getEmployeeNumber(),
+                pr.getEmployeeName(),
+                pr.getDaysPresent(),
+                pr.getLateMinutes(),
+                money(pr.getTotalDeductionsBeforeTax()),
+                money(pr.getWithholdingTax()),
+                money(pr.getNetPay())
+        };
+    }
+
+    private void showMonthTotals(MonthlyPayrollSummary s) {
+        monthCountVal.setText(String.valueOf(s.size()));
+        monthTotalGovVal.setText(money(s.getTotalGov()));
+        monthTotalTaxVal.setText(money(s.getTotalTax()));
+        monthTotalNetVal.setText(money(s.getTotalNet()));
+    }
+
+    /*
+     * This saves every record of the last Compute All in one batch.
+     * Rows saved before for the same employees and month are replaced.
+     */
+    private void saveMonthRecords() {
+        if (monthSummary == null || monthSummary.size() == 0) {
+            JOptionPane.showMessageDialog(this, "No monthly run to save yet. Compute all employees first.", "Nothing to Save", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        try {
+            List<PayrollRecord> records = monthSummary.records();
+            payrollAppService.saveRecords(records);
+
+            JOptionPane.showMessageDialog(this,
+                    records.size() + " payroll records saved to: data/payroll_records.csv",
+                    "Saved",
+                    JOptionPane.INFORMATION_MESSAGE);
+
+            saveMonthBtn.setEnabled(false);
+
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this,
+                    "Failed to save payroll records:\n" + ex.getMessage(),
+                    "Save Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     /*
@@ -1219,6 +1604,12 @@ public class PayrollPanel extends JPanel {
     }
 
     private void clearMonthlySummary() {
+        cancelComputeAll();
+        monthSummary = null;
+        saveMonthBtn.setEnabled(false);
+        monthProgress.setValue(0);
+        monthProgress.setString("Not running");
+
         monthTableModel.setRowCount(0);
         monthCountVal.setText("-");
         monthTotalGovVal.setText("-");
@@ -11,14 +11,7 @@ import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.util.List;
 
-public class UserAccountsPanel extends JPanel {
-
-    // Theme colors used in this panel
-    private static final Color BG = new Color(245, 247, 252);
-    private static final Color CARD_BG = Color.WHITE;
-    private static final Color BORDER = new Color(225, 230, 240);
-    private static final Color TEXT = new Color(28, 35, 50);
-    private static final Color MUTED = new Color(110, 120, 140);
+public class UserAccountsPanel extends BasePanel {
 
     private JComboBox<String> employeeCombo;
     private JTextField usernameField;
@@ -33,10 +26,6 @@ public class UserAccountsPanel extends JPanel {
     private final UserService userService = new UserService();
 
     public UserAccountsPanel() {
-        setLayout(new BorderLayout(14, 14));
-        setBackground(BG);
-        setBorder(new EmptyBorder(18, 18, 18, 18));
-
         add(buildHeader(), BorderLayout.NORTH);
         add(buildBody(), BorderLayout.CENTER);
 
@@ -158,11 +147,18 @@ public class UserAccountsPanel extends JPanel {
      * This reloads employees and repopulates the dropdown.
      * Only IT users are allowed to access this panel.
      */
+    @Override
     public void refreshData() {
+        cancelLoad();
+
         User current = Session.getCurrentUser();
         if (current == null || !current.isIt()) return;
 
-        employees = employeeService.getAllEmployees();
+        loadAsync(employeeService::getAllEmployees, this::showEmployees);
+    }
+
+    private void showEmployees(List<Employee> loaded) {
+        employees = loaded;
 
         employeeCombo.removeAllItems();
         for (Employee e : employees) {
@@ -0,0 +1,285 @@
+package motorph.util;
+
+import motorph.model.AttendanceRecord;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * This utility class keeps an append-only log of attendance changes
+ * next to attendance.csv. Each clock event adds one short line instead of
+ * rewriting the whole attendance file.
+ *
+ * Line formats:
+ *   I,<record>             inserted record
+ *   U,<old record>,<new>   updated record
+ *   D,<record>             deleted record
+ *
+ * The first line holds the journal's generation number. A full save of
+ * the attendance file writes the generation it folded in into the file's
+ * header (an extra "journal=<n>" column) and starts the journal of the
+ * next generation. Events are only applied to the attendance file of
+ * their own generation:
+ *   - same generation: the events are not in the file yet;
+ *   - file one generation ahead: the events were folded in, and the
+ *     program stopped before it could start the new journal;
+ *   - anything else, such as an older backup put back while the journal
+ *     still has events: loading stops with an error instead of dropping them.
+ * The number travels with the file's contents, so copying or touching
+ * the file does not change which events belong to it.
+ */
+public class AttendanceJournal {
+
+    private static final String PATH = "data/attendance.journal";
+    private static final String GENERATION_PREFIX = "#generation,";
+
+    // Header column of attendance.csv that holds the folded-in generation
+    static final String BASE_MARKER = "journal=";
+
+    private static final String INSERT = "I";
+    private static final String UPDATE = "U";
+    private static final String DELETE = "D";
+
+    // Number of events currently in the journal
+    private static int eventCount = 0;
+
+    // Generation of the journal file, or -1 when it was not read yet
+    private static long generation = -1;
+
+    public static synchronized void appendInsert(AttendanceRecord record) throws IOException {
+        append(INSERT + "," + AttendanceUtil.toFields(record));
+    }
+
+    public static synchronized void appendUpdate(AttendanceRecord originalKey, AttendanceRecord updated) throws IOException {
+        append(UPDATE + "," + AttendanceUtil.toFields(originalKey) + "," + AttendanceUtil.toFields(updated));
+    }
+
+    public static synchronized void appendDelete(AttendanceRecord key) throws IOException {
+        append(DELETE + "," + AttendanceUtil.toFields(key));
+    }
+
+    public static synchronized int eventCount() {
+        return eventCount;
+    }
+
+    /*
+     * This returns the generation the next full save of the attendance file
+     * must write, which is one past the events it folds in.
+     */
+    static synchronized long nextGeneration() throws IOException {
+        File f = file();
+        long journal = f.exists() ? readGeneration(f) : 0;
+        return Math.max(journal, baseGeneration()) + 1;
+    }
+
+    /*
+     * This applies the journal events on top of the records
+     * that were read from the attendance file.
+     */
+    public static synchronized void replay(List<AttendanceRecord> records) throws IOException {
+        eventCount = 0;
+
+        File f = file();
+        if (!f.exists()) return;
+
+        long base = baseGeneration();
+        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
+            generation = parseGeneration(br.readLine());
+
+            // The rest of the journal is read as CSV, so quoted names may span commas
+            try (CsvCodec.Reader events = new CsvCodec.Reader(br)) {
+                if (generation == base - 1) return; // already folded in
+                if (generation != base) {
+                    if (events.next()) throw mismatch(base);
+                    return; // nothing to lose; the next change starts a new journal
+                }
+
+                Replayer replayer = new Replayer(records);
+                while (events.next()) {
+                    if (replayer.apply(events)) eventCount++;
+                }
+                replayer.finish();
+            }
+        }
+    }
+
+    /*
+     * This starts an empty journal of the given generation. It is called
+     * right after the journal events were saved into an attendance file
+     * of that generation.
+     */
+    public static synchronized void reset(long newGeneration) throws IOException {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(file(), false))) {
+            pw.println(GENERATION_PREFIX + newGeneration);
+            if (pw.checkError()) throw new IOException("Failed to write attendance journal.");
+        }
+        eventCount = 0;
+        generation = newGeneration;
+    }
+
+    static File file() {
+        return new File(PATH);
+    }
+
+    private static void append(String line) throws IOException {
+        File f = file();
+        long base = baseGeneration();
+        if (!f.exists()) {
+            reset(base);
+        } else if (readGeneration(f) != base) {
+            // Only a journal whose events are in the attendance file may be emptied
+            if (generation != base - 1 && hasEvents(f)) throw mismatch(base);
+            reset(base);
+        }
+
+        try (PrintWriter pw = new PrintWriter(new FileWriter(f, true))) {
+            pw.println(line);
+            if (pw.checkError()) throw new IOException("Failed to write attendance journal.");
+        }
+        eventCount++;
+    }
+
+    private static long readGeneration(File f) throws IOException {
+        if (generation == -1) {
+            try (BufferedReader br = new BufferedReader(new FileReader(f))) {
+                generation = parseGeneration(br.readLine());
+            }
+        }
+        return generation;
+    }
+
+    private static boolean hasEvents(File f) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
+            br.readLine();
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.trim().isEmpty()) return true;
+            }
+        }
+        return false;
+    }
+
+    private static long parseGeneration(String line) {
+        if (line == null || !line.startsWith(GENERATION_PREFIX)) return -2;
+        try {
+            return Long.parseLong(line.substring(GENERATION_PREFIX.length()).trim());
+        } catch (NumberFormatException e) {
+            return -2;
+        }
+    }
+
+    /*
+     * This reads the generation from the header of attendance.csv.
+     * A file that was never saved by this class is generation 0.
+     */
+    private static long baseGeneration() throws IOException {
+        File base = AttendanceUtil.dataFile();
+        if (!base.exists()) return 0;
+
+        String header;
+        try (BufferedReader br = new BufferedReader(new FileReader(base))) {
+            header = br.readLine();
+        }
+        if (header == null) return 0;
+
+        CsvCodec.Reader cells = CsvCodec.Reader.ofLine(header);
+        for (int i = 0; i < cells.size(); i++) {
+            String cell = cells.get(i).trim();
+            if (!cell.startsWith(BASE_MARKER)) continue;
+            try {
+                return Long.parseLong(cell.substring(BASE_MARKER.length()));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static IOException mismatch(long base) {
+        return new IOException("The attendance journal " + PATH + " has changes for journal generation "
+                + generation + ", but " + AttendanceUtil.dataFile().getPath() + " is at generation " + base
+                + ". Put back the attendance file those changes belong to, or move the journal away"
+                + " after checking its changes by hand.");
+    }
+
+    /*
+     * This helper applies events in order. Updated and deleted records are
+     * looked up through a key map instead of scanning the whole list each time.
+     * Deleted slots are set to null and removed once at the end.
+     */
+    private static class Replayer {
+        private static final int[] FIRST = AttendanceUtil.consecutiveColumns(1);
+        private static final int[] SECOND = AttendanceUtil.consecutiveColumns(7);
+
+        private final List<AttendanceRecord> records;
+        private Map<String, List<Integer>> positions;
+
+        Replayer(List<AttendanceRecord> records) {
+            this.records = records;
+        }
+
+        boolean apply(CsvCodec.Reader p) {
+            String op = p.get(0);
+
+            if (INSERT.equals(op)) {
+                AttendanceRecord r = AttendanceUtil.fromFields(p, FIRST);
+                if (r == null) return false;
+                records.add(r);
+                if (positions != null) remember(r, records.size() - 1);
+                return true;
+            }
+
+            if (UPDATE.equals(op)) {
+                AttendanceRecord key = AttendanceUtil.fromFields(p, FIRST);
+                AttendanceRecord updated = AttendanceUtil.fromFields(p, SECOND);
+                if (key == null || updated == null) return false;
+
+                int idx = take(key);
+                if (idx == -1) return false;
+                records.set(idx, updated);
+                remember(updated, idx);
+                return true;
+            }
+
+            if (DELETE.equals(op)) {
+                AttendanceRecord key = AttendanceUtil.fromFields(p, FIRST);
+                if (key == null) return false;
+
+                int idx = take(key);
+                if (idx == -1) return false;
+                records.set(idx, null);
+                return true;
+            }
+
+            return false;
+        }
+
+        void finish() {
+            records.removeIf(r -> r == null);
+        }
+
+        private int take(AttendanceRecord key) {
+            if (positions == null) {
+                positions = new HashMap<>();
+                for (int i = 0; i < records.size(); i++) {
+                    if (records.get(i) != null) remember(records.get(i), i);
+                }
+            }
+
+            List<Integer> list = positions.get(keyOf(key));
+            if (list == null || list.isEmpty()) return -1;
+            return list.remove(list.size() - 1);
+        }
+
+        private void remember(AttendanceRecord r, int idx) {
+            positions.computeIfAbsent(keyOf(r), k -> new ArrayList<>()).add(idx);
+        }
+
+        private String keyOf(AttendanceRecord r) {
+            return r.getEmployeeNumber() + "|" + r.getDate() + "|" + r.getLogIn() + "|" + r.getLogOut();
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package motorph.util;
+
+import motorph.model.AttendanceRecord;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+ * This class stores attendance as one CSV file per month:
+ *   data/attendance/yyyy-MM.csv
+ * Records without a date go into data/attendance/undated.csv.
+ *
+ * The layout is optional. It is used when the data/attendance folder exists.
+ * On first use, while the folder has no month files yet, the records of
+ * data/attendance.csv (and its journal) are split into month files and the
+ * old file is renamed to attendance.csv.migrated. Once month files exist,
+ * an attendance.csv that shows up again is left alone and never read.
+ *
+ * A lookup for one month only reads that month's file, and a change only
+ * rewrites or appends to the month it belongs to. Closed months are never
+ * written again unless one of their records is edited.
+ *
+ * A loaded month is kept as a CompactAttendanceStore, not as records.
+ * Records are rebuilt from it only to show or edit them. A month the store
+ * can not hold exactly (times with seconds, rows without an employee number)
+ * and the undated file are kept as records instead.
+ */
+public class AttendancePartitions {
+
+    private static final String DIR = "data/attendance";
+    private static final String UNDATED = "undated";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+
+    // Present while a migration is writing month files, so a stopped one is run again
+    private static final String MIGRATING_MARKER = ".migrating";
+
+    // Loaded month files, keyed by yyyy-MM or UNDATED
+    private static final Map<String, Partition> cache = new HashMap<>();
+
+    /*
+     * This returns true when attendance is stored in month files.
+     */
+    public static boolean enabled() {
+        return new File(DIR).isDirectory();
+    }
+
+    /*
+     * This returns true when the old single attendance file still has to be
+     * split into month files: the folder has no month files yet, or a
+     * migration that wrote some of them was stopped.
+     */
+    static boolean migrationPending() {
+        if (!enabled() || !AttendanceUtil.dataFile().exists()) return false;
+        return keysOnDisk().isEmpty() || marker().exists();
+    }
+
+    /*
+     * This splits all attendance records into month files and retires the
+     * old attendance file and journal. The month files it writes hold only
+     * the old file's records until the marker is removed, so running it
+     * again after a crash simply writes the same month files again.
+     */
+    static synchronized void migrate(List<AttendanceRecord> records) throws IOException {
+        File dir = new File(DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + DIR + ".");
+        }
+        if (!keysOnDisk().isEmpty() && !marker().exists()) {
+            throw new IOException(DIR + " already has month files; " + AttendanceUtil.dataFile().getPath() + " was not migrated.");
+        }
+
+        Files.write(marker().toPath(), new byte[0]);
+        Map<String, List<AttendanceRecord>> byKey = group(records);
+        for (Map.Entry<String, List<AttendanceRecord>> e : byKey.entrySet()) {
+            write(e.getKey(), e.getValue());
+        }
+        cache.clear();
+        Files.delete(marker().toPath());
+
+        // From here on the month files are the attendance; the old file is only kept for reference
+        File legacy = AttendanceUtil.dataFile();
+        move(legacy, retiredName(legacy));
+        Files.deleteIfExists(AttendanceJournal.file().toPath());
+    }
+
+    /*
+     * This returns one month's records grouped by employee number.
+     * Each employee's list is sorted by date and log in.
+     * For a month kept as arrays the records are built for this call.
+     */
+    static synchronized Map<String, List<AttendanceRecord>> month(YearMonth ym) {
+        Partition p = load(ym.toString());
+        return p.store == null ? p.byEmployee : group(p.store.allRecords(), AttendancePartitions::employeeOf);
+    }
+
+    /*
+     * This rebuilds one employee's records of one month, sorted by date and log in.
+     */
+    static synchronized List<AttendanceRecord> employeeRecords(YearMonth ym, String employeeNo) {
+        Partition p = load(ym.toString());
+        if (p.store != null) return p.store.records(employeeNo);
+
+        List<AttendanceRecord> list = p.byEmployee.get(employeeNo);
+        return list == null ? new ArrayList<>() : new ArrayList<>(list);
+    }
+
+    /*
+     * This returns the month as arrays, or null when it is kept as records.
+     */
+    static synchronized CompactAttendanceStore compactMonth(YearMonth ym) {
+        return load(ym.toString()).store;
+    }
+
+    /*
+     * This returns the version of one month file. It changes when the file
+     * is read again after an outside change or a full save. Changes made
+     * through add, update, and delete keep it, because AttendanceRepository
+     * versions those per employee.
+     */
+    static synchronized long monthVersion(YearMonth ym) {
+        return load(ym.toString()).version;
+    }
+
+    /*
+     * This returns every record in every month file.
+     */
+    static synchronized List<AttendanceRecord> loadAll() {
+        List<AttendanceRecord> out = new ArrayList<>();
+        for (String key : keysOnDisk()) {
+            out.addAll(load(key).records());
+        }
+        return out;
+    }
+
+    /*
+     * A new record is appended to its month file; nothing else is rewritten.
+     */
+    static synchronized void add(AttendanceRecord r) throws IOException {
+        String key = keyOf(r);
+        Partition p = load(key);
+
+        File f = fileFor(key);
+        boolean isNew = !f.exists();
+        try (PrintWriter pw = new PrintWriter(new FileWriter(f, true))) {
+            if (isNew) pw.println(AttendanceUtil.HEADER);
+            pw.println(AttendanceUtil.toFields(r));
+            if (pw.checkError()) throw new IOException("Failed to write " + f.getPath() + ".");
+        } catch (IOException e) {
+            cache.remove(key);
+            throw e;
+        }
+
+        p.add(r);
+        p.rememberStamp(f);
+    }
+
+    /*
+     * This replaces one record. Only the month files of the old and
+     * the new record are touched.
+     */
+    static synchronized void update(AttendanceRecord originalKey, AttendanceRecord updated) throws IOException {
+        String oldKey = keyOf(originalKey);
+        String newKey = keyOf(updated);
+
+        List<AttendanceRecord> rows = load(oldKey).records();
+        int idx = find(rows, originalKey);
+        if (idx == -1) throw new IOException("Record not found to update.");
+
+        if (oldKey.equals(newKey)) {
+            List<AttendanceRecord> changed = rows;
+            changed.set(idx, updated);
+            rewrite(oldKey, changed);
+            return;
+        }
+
+        // The new month is written first, so a failure never loses the record
+        add(updated);
+        try {
+            List<AttendanceRecord> remaining = load(oldKey).records();
+            int i = find(remaining, originalKey);
+            if (i == -1) throw new IOException("Record not found to update.");
+
+            remaining.remove(i);
+            rewrite(oldKey, remaining);
+        } catch (IOException | RuntimeException e) {
+            // Take the copy out of the new month again, leaving the record where it was
+            try {
+                delete(updated);
+            } catch (IOException | RuntimeException undo) {
+                e.addSuppressed(undo);
+            }
+            throw e;
+        }
+    }
+
+    static synchronized void delete(AttendanceRecord key) throws IOException {
+        String k = keyOf(key);
+
+        List<AttendanceRecord> remaining = load(k).records();
+        int idx = find(remaining, key);
+        if (idx == -1) throw new IOException("Record not found to delete.");
+
+        remaining.remove(idx);
+        rewrite(k, remaining);
+    }
+
+    /*
+     * This saves a full set of records. Month files whose rows did not
+     * change are left as they are, and months with no records are removed.
+     */
+    static synchronized void saveAll(List<AttendanceRecord> records) throws IOException {
+        Map<String, List<AttendanceRecord>> byKey = group(records);
+
+        for (String key : keysOnDisk()) {
+            if (!byKey.containsKey(key)) replace(key, Collections.emptyList());
+        }
+        for (Map.Entry<String, List<AttendanceRecord>> e : byKey.entrySet()) {
+            if (!sameRows(load(e.getKey()).records(), e.getValue())) replace(e.getKey(), e.getValue());
+        }
+    }
+
+    /*
+     * This writes one edited month and reads it back, keeping its version.
+     */
+    private static void rewrite(String key, List<AttendanceRecord> records) throws IOException {
+        long version = load(key).version;
+        replace(key, records);
+        load(key).version = version;
+    }
+
+    private static void replace(String key, List<AttendanceRecord> records) throws IOException {
+        try {
+            if (records.isEmpty()) {
+                Files.deleteIfExists(fileFor(key).toPath());
+            } else {
+                write(key, records);
+            }
+        } finally {
+            cache.remove(key);
+        }
+    }
+
+    private static Partition load(String key) {
+        File f = fileFor(key);
+        Partition p = cache.get(key);
+        if (p != null && p.matches(f)) return p;
+
+        try {
+            p = Partition.of(MappedAttendanceReader.readRecords(f));
+        } catch (IOException e) {
+            // An unreadable month must not look like a month without attendance, so nothing is cached
+            cache.remove(key);
+            throw new RuntimeException(e);
+        }
+        p.rememberStamp(f);
+        p.version = AttendanceRepository.VERSIONS.incrementAndGet();
+        cache.put(key, p);
+        return p;
+    }
+
+    private static void write(String key, List<AttendanceRecord> records) throws IOException {
+        List<AttendanceRecord> sorted = new ArrayList<>(records);
+        sorted.sort(AttendanceUtil.FILE_ORDER);
+
+        File target = fileFor(key);
+        File temp = new File(target.getPath() + ".tmp");
+
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(temp)))) {
+            pw.println(AttendanceUtil.HEADER);
+            for (AttendanceRecord r : sorted) {
+                pw.println(AttendanceUtil.toFields(r));
+            }
+            if (pw.checkError()) throw new IOException("Failed to write " + temp.getPath() + ".");
+        }
+        move(temp, target);
+    }
+
+    // An earlier retired file is never overwritten
+    private static File retiredName(File legacy) {
+        File to = new File(legacy.getPath() + MIGRATED_SUFFIX);
+        for (int i = 1; to.exists(); i++) {
+            to = new File(legacy.getPath() + MIGRATED_SUFFIX + "." + i);
+        }
+        return to;
+    }
+
+    private static File marker() {
+        return new File(DIR, MIGRATING_MARKER);
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Map<String, List<AttendanceRecord>> group(List<AttendanceRecord> records) {
+        return group(records, AttendancePartitions::keyOf);
+    }
+
+    private static Map<String, List<AttendanceRecord>> group(List<AttendanceRecord> records,
+                                                             Function<AttendanceRecord, String> keyOf) {
+        Map<String, List<AttendanceRecord>> byKey = new LinkedHashMap<>();
+        for (AttendanceRecord r : records) {
+            String key = keyOf.apply(r);
+            if (key != null) byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(r);
+        }
+        return byKey;
+    }
+
+    private static int find(List<AttendanceRecord> records, AttendanceRecord key) {
+        for (int i = 0; i < records.size(); i++) {
+            if (AttendanceUtil.sameKey(records.get(i), key)) return i;
+        }
+        return -1;
+    }
+
+    // Records without a date are not part of any employee's month
+    private static String employeeOf(AttendanceRecord r) {
+        return r.getDate() == null ? null : r.getEmployeeNumber();
+    }
+
+    private static boolean sameRows(List<AttendanceRecord> a, List<AttendanceRecord> b) {
+        if (a.size() != b.size()) return false;
+
+        List<AttendanceRecord> x = new ArrayList<>(a);
+        List<AttendanceRecord> y = new ArrayList<>(b);
+        x.sort(AttendanceUtil.FILE_ORDER);
+        y.sort(AttendanceUtil.FILE_ORDER);
+        for (int i = 0; i < x.size(); i++) {
+            if (!AttendanceUtil.toFields(x.get(i)).equals(AttendanceUtil.toFields(y.get(i)))) return false;
+        }
+        return true;
+    }
+
+    private static List<String> keysOnDisk() {
+        List<String> keys = new ArrayList<>();
+        File[] files = new File(DIR).listFiles((d, name) -> name.endsWith(".csv"));
+        if (files == null) return keys;
+
+        for (File f : files) {
+            String key = f.getName().substring(0, f.getName().length() - 4);
+            if (UNDATED.equals(key) || isMonth(key)) keys.add(key);
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    private static boolean isMonth(String s) {
+        try {
+            YearMonth.parse(s);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String keyOf(AttendanceRecord r) {
+        return r.getDate() == null ? UNDATED : YearMonth.from(r.getDate()).toString();
+    }
+
+    private static File fileFor(String key) {
+        return new File(DIR, key + ".csv");
+    }
+
+    /*
+     * This holds one loaded month file and the stamp it was loaded from.
+     * The month is kept either as a store or, when the store can not hold
+     * it, as records grouped by employee.
+     */
+    private static class Partition {
+        CompactAttendanceStore store;
+        List<AttendanceRecord> records;
+        Map<String, List<AttendanceRecord>> byEmployee;
+        long size = -1;
+        long modified = -1;
+        long version;
+
+        static Partition of(List<AttendanceRecord> rows) {
+            Partition p = new Partition();
+            p.store = CompactAttendanceStore.of(rows);
+            if (p.store == null) p.keepRecords(rows);
+            return p;
+        }
+
+        /*
+         * This returns a new list of the month's records, to edit or save.
+         */
+        List<AttendanceRecord> records() {
+            return store != null ? store.allRecords() : new ArrayList<>(records);
+        }
+
+        void add(AttendanceRecord r) {
+            if (store != null) {
+                CompactAttendanceStore next = store.plus(r);
+                if (next != null) {
+                    store = next;
+                    return;
+                }
+                keepRecords(store.allRecords());
+                store = null;
+            }
+
+            records.add(r);
+            addToEmployee(r);
+        }
+
+        private void keepRecords(List<AttendanceRecord> rows) {
+            records = new ArrayList<>();
+            byEmployee = new HashMap<>();
+            for (AttendanceRecord r : rows) {
+                records.add(r);
+                addToEmployee(r);
+            }
+        }
+
+        private void addToEmployee(AttendanceRecord r) {
+            if (r.getEmployeeNumber() == null || r.getDate() == null) return;
+
+            List<AttendanceRecord> list = byEmployee.computeIfAbsent(r.getEmployeeNumber(), k -> new ArrayList<>());
+            int pos = Collections.binarySearch(list, r, AttendanceRepository.DAY_ORDER);
+            list.add(pos < 0 ? -pos - 1 : pos, r);
+        }
+
+        boolean matches(File f) {
+            return f.length() == size && f.lastModified() == modified;
+        }
+
+        void rememberStamp(File f) {
+            size = f.length();
+            modified = f.lastModified();
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package motorph.util;
+
+import motorph.model.AttendanceEntry;
+import motorph.model.AttendanceRecord;
+import motorph.model.PayPeriod;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * This class keeps the attendance records in memory after the first load.
+ * Records are indexed by month and employee number so that one employee-month
+ * lookup does not need to reparse and sort the whole attendance file.
+ * The file is only read again when it was changed outside this class.
+ *
+ * Changes are written as small appends to AttendanceJournal. A background
+ * task folds the journal back into attendance.csv once enough events pile up,
+ * so a clock in or clock out never pays for rewriting the whole file.
+ *
+ * When attendance is stored in month files (see AttendancePartitions),
+ * lookups and changes go to the one month they need instead, and each
+ * month is kept as a CompactAttendanceStore rather than as records.
+ * The single attendance file keeps its records, which the journal and the
+ * full rewrite need, and its summaries are worked out from them.
+ */
+public class AttendanceRepository {
+
+    // Records inside one employee-month are kept sorted by date, then log in
+    static final Comparator<AttendanceRecord> DAY_ORDER =
+            Comparator.comparing(AttendanceRecord::getDate)
+                    .thenComparing(AttendanceRecord::getLogIn, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private static List<AttendanceRecord> allRecords;
+    private static Map<YearMonth, Map<String, List<AttendanceRecord>>> index;
+
+    // Journal events allowed before the attendance file is rewritten
+    private static final int COMPACT_AFTER_EVENTS = 200;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "attendance-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static boolean compactionQueued = false;
+
+    // Source of all attendance version numbers, shared with AttendancePartitions
+    static final AtomicLong VERSIONS = new AtomicLong();
+
+    // Version of attendance.csv as last loaded, and of each employee-month changed since
+    private static long loadedVersion;
+    private static final Map<YearMonth, Map<String, Long>> editVersions = new HashMap<>();
+
+    // File stamps of the last load, used to detect outside changes
+    private static long loadedModified = -1;
+    private static long loadedSize = -1;
+    private static long loadedJournalModified = -1;
+    private static long loadedJournalSize = -1;
+
+    public static synchronized List<AttendanceRecord> findRecordsForEmployeeMonth(String employeeNo, YearMonth ym) {
+        List<AttendanceRecord> out = new ArrayList<>();
+        for (AttendanceRecord r : bucket(employeeNo, ym)) {
+            out.add(copyOf(r));
+        }
+        return out;
+    }
+
+    public static synchronized List<AttendanceEntry> findEntriesForEmployeeMonth(String employeeNo, YearMonth ym) {
+        CompactAttendanceStore store = compactMonth(ym);
+        if (store != null) return store.entries(employeeNo);
+        return AttendanceUtil.toEntries(bucket(employeeNo, ym));
+    }
+
+    public static synchronized AttendanceUtil.AttendanceSummary summarizeForEmployeeMonth(String employeeNo, YearMonth ym) {
+        CompactAttendanceStore store = compactMonth(ym);
+        if (store != null) return store.summarize(employeeNo);
+        return AttendanceUtil.summarize(AttendanceUtil.toEntries(bucket(employeeNo, ym)));
+    }
+
+    /*
+     * This summarizes every employee's attendance for one month
+     * in a single pass over that month's records.
+     */
+    public static synchronized Map<String, AttendanceUtil.AttendanceSummary> summarizeAllForMonth(YearMonth ym) {
+        return summarizeMonth(ym);
+    }
+
+    /*
+     * This summarizes every employee for every month from one month to another,
+     * both included, in one call. Each month's records are visited once and
+     * the data cannot change between months. The map is in month order.
+     */
+    public static synchronized Map<YearMonth, Map<String, AttendanceUtil.AttendanceSummary>> summarizeAllForRange(YearMonth from, YearMonth to) {
+        Map<YearMonth, Map<String, AttendanceUtil.AttendanceSummary>> out = new LinkedHashMap<>();
+        for (YearMonth ym = from; !ym.isAfter(to); ym = ym.plusMonths(1)) {
+            out.put(ym, summarizeMonth(ym));
+        }
+        return out;
+    }
+
+    private static Map<String, AttendanceUtil.AttendanceSummary> summarizeMonth(YearMonth ym) {
+        CompactAttendanceStore store = compactMonth(ym);
+        if (store != null) return store.summarizeAll();
+
+        Map<String, AttendanceUtil.AttendanceSummary> out = new HashMap<>();
+        for (Map.Entry<String, List<AttendanceRecord>> e : month(ym).entrySet()) {
+            out.put(e.getKey(), AttendanceUtil.summarize(AttendanceUtil.toEntries(e.getValue())));
+        }
+        return out;
+    }
+
+    /*
+     * These are the same summaries split at the semi-monthly cutoff,
+     * still in one pass over the month's records.
+     */
+    public static synchronized AttendanceUtil.CutoffSummary summarizeForEmployeeMonthByCutoff(String employeeNo, YearMonth ym) {
+        CompactAttendanceStore store = compactMonth(ym);
+        if (store != null) return store.summarizeByCutoff(employeeNo, cutoffDayOf(ym));
+        return AttendanceUtil.summarizeByCutoff(AttendanceUtil.toEntries(bucket(employeeNo, ym)));
+    }
+
+    public static synchronized Map<String, AttendanceUtil.CutoffSummary> summarizeAllForMonthByCutoff(YearMonth ym) {
+        CompactAttendanceStore store = compactMonth(ym);
+        if (store != null) return store.summarizeAllByCutoff(cutoffDayOf(ym));
+
+        Map<String, AttendanceUtil.CutoffSummary> out = new HashMap<>();
+        for (Map.Entry<String, List<AttendanceRecord>> e : month(ym).entrySet()) {
+            out.put(e.getKey(), AttendanceUtil.summarizeByCutoff(AttendanceUtil.toEntries(e.getValue())));
+        }
+        return out;
+    }
+
+    // Epoch day of the last day of the month's first cutoff
+    private static int cutoffDayOf(YearMonth ym) {
+        return (int) ym.atDay(PayPeriod.CUTOFF_DAY).toEpochDay();
+    }
+
+    /*
+     * This returns a number that changes whenever the employee's records
+     * for the month change. A change made through this class only changes
+     * the number of the employee-months it touched; an outside change to
+     * the file changes the numbers of every employee in the months it reloads.
+     */
+    public static synchronized long versionOf(String employeeNo, YearMonth ym) {
+        long base = loadedVersion;
+        try {
+            if (usePartitions()) {
+                base = AttendancePartitions.monthVersion(ym);
+            } else {
+                ensureLoaded();
+                base = loadedVersion;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // Every number comes from one counter, so the larger one is the newest change
+        Map<String, Long> month = editVersions.get(ym);
+        Long edited = month == null ? null : month.get(employeeNo);
+        return edited == null ? base : Math.max(base, edited);
+    }
+
+    /*
+     * These methods write the change to the journal first,
+     * then update the in-memory records and the index.
+     */
+    public static synchronized void add(AttendanceRecord record) throws IOException {
+        AttendanceRecord stored = copyOf(record);
+        if (usePartitions()) {
+            AttendancePartitions.add(stored);
+            touched(stored);
+            return;
+        }
+
+        ensureLoaded();
+        journal(() -> AttendanceJournal.appendInsert(stored));
+
+        allRecords.add(stored);
+        indexRecord(stored);
+        touched(stored);
+        afterWrite();
+    }
+
+    public static synchronized void update(AttendanceRecord originalKey, AttendanceRecord updated) throws IOException {
+        if (usePartitions()) {
+            AttendancePartitions.update(copyOf(originalKey), copyOf(updated));
+            touched(originalKey);
+            touched(updated);
+            return;
+        }
+
+        ensureLoaded();
+
+        int idx = findRecordIndex(originalKey);
+        if (idx == -1) throw new IOException("Record not found to update.");
+
+        AttendanceRecord old = allRecords.get(idx);
+        AttendanceRecord stored = copyOf(updated);
+        journal(() -> AttendanceJournal.appendUpdate(old, stored));
+
+        allRecords.set(idx, stored);
+        unindexRecord(old);
+        indexRecord(stored);
+        touched(old);
+        touched(stored);
+        afterWrite();
+    }
+
+    public static synchronized void delete(AttendanceRecord key) throws IOException {
+        if (usePartitions()) {
+            AttendancePartitions.delete(copyOf(key));
+            touched(key);
+            return;
+        }
+
+        ensureLoaded();
+
+        int idx = findRecordIndex(key);
+        if (idx == -1) throw new IOException("Record not found to delete.");
+
+        AttendanceRecord old = allRecords.get(idx);
+        journal(() -> AttendanceJournal.appendDelete(old));
+
+        allRecords.remove(idx);
+        unindexRecord(old);
+        touched(old);
+        afterWrite();
+    }
+
+    /*
+     * This folds all journal events into attendance.csv, which
+     * starts a new empty journal of the next generation.
+     */
+    public static synchronized void compact() throws IOException {
+        compactionQueued = false;
+        if (usePartitions()) return; // month files are written directly
+
+        ensureLoaded();
+        if (AttendanceJournal.eventCount() == 0) return;
+
+        try {
+            AttendanceUtil.saveAllRecords(allRecords);
+        } catch (IOException e) {
+            invalidate();
+            throw e;
+        }
+        rememberStamp();
+    }
+
+    /*
+     * This moves attendance into month files under data/attendance.
+     * It folds the journal in first, so no change is lost.
+     */
+    public static synchronized void migrateToPartitions() throws IOException {
+        if (AttendancePartitions.enabled() && !AttendancePartitions.migrationPending()) return;
+
+        invalidate();
+        AttendancePartitions.migrate(AttendanceUtil.loadAllRecords());
+        invalidate();
+    }
+
+    /*
+     * This forces the next lookup to read the attendance file again.
+     */
+    public static synchronized void invalidate() {
+        allRecords = null;
+        index = null;
+        loadedModified = -1;
+        loadedSize = -1;
+    }
+
+    private static void ensureLoaded() {
+        File f = AttendanceUtil.dataFile();
+        File j = AttendanceJournal.file();
+        if (allRecords != null
+                && f.lastModified() == loadedModified && f.length() == loadedSize
+                && j.lastModified() == loadedJournalModified && j.length() == loadedJournalSize) {
+            return;
+        }
+
+        allRecords = AttendanceUtil.loadAllRecords();
+        index = new HashMap<>();
+        loadedVersion = VERSIONS.incrementAndGet();
+        for (AttendanceRecord r : allRecords) {
+            indexRecord(r);
+        }
+        rememberStamp();
+        scheduleCompactionIfNeeded();
+    }
+
+    // Gives the record's employee-month a new version number
+    private static void touched(AttendanceRecord r) {
+        if (r.getEmployeeNumber() == null || r.getDate() == null) return;
+
+        editVersions.computeIfAbsent(YearMonth.from(r.getDate()), k -> new HashMap<>())
+                .put(r.getEmployeeNumber(), VERSIONS.incrementAndGet());
+    }
+
+    private interface JournalWrite {
+        void run() throws IOException;
+    }
+
+    private static void journal(JournalWrite write) throws IOException {
+        try {
+            write.run();
+        } catch (IOException e) {
+            // The journal may now differ from memory, so load it again next time
+            invalidate();
+            throw e;
+        }
+    }
+
+    private static void afterWrite() {
+        rememberStamp();
+        scheduleCompactionIfNeeded();
+    }
+
+    private static void scheduleCompactionIfNeeded() {
+        if (compactionQueued || AttendanceJournal.eventCount() < COMPACT_AFTER_EVENTS) return;
+
+        compactionQueued = true;
+        COMPACTOR.submit(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private static void rememberStamp() {
+        File f = AttendanceUtil.dataFile();
+        File j = AttendanceJournal.file();
+        loadedModified = f.lastModified();
+        loadedSize = f.length();
+        loadedJournalModified = j.lastModified();
+        loadedJournalSize = j.length();
+    }
+
+    /*
+     * This returns true when the month files should be used.
+     * The first call after the data/attendance folder appears
+     * moves the old attendance file into it.
+     */
+    private static boolean usePartitions() throws IOException {
+        if (!AttendancePartitions.enabled()) return false;
+        if (AttendancePartitions.migrationPending()) migrateToPartitions();
+        return true;
+    }
+
+    /*
+     * This is usePartitions() for lookups. Once month files are in use the
+     * old attendance file is never read again, so a failed migration is an
+     * error here rather than a reason to fall back to it.
+     */
+    private static boolean partitioned() {
+        try {
+            return usePartitions();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * This returns one month's records grouped by employee number.
+     * With month files only that month's file is read.
+     */
+    private static Map<String, List<AttendanceRecord>> month(YearMonth ym) {
+        if (partitioned()) return AttendancePartitions.month(ym);
+
+        ensureLoaded();
+        Map<String, List<AttendanceRecord>> month = index.get(ym);
+        return month == null ? Collections.emptyMap() : month;
+    }
+
+    /*
+     * This returns the month as arrays when it is kept that way, which is
+     * only in month files. Otherwise it returns null and the month is
+     * summarized from its records.
+     */
+    private static CompactAttendanceStore compactMonth(YearMonth ym) {
+        if (ym == null || !partitioned()) return null;
+        return AttendancePartitions.compactMonth(ym);
+    }
+
+    private static List<AttendanceRecord> bucket(String employeeNo, YearMonth ym) {
+        if (employeeNo == null || ym == null) return Collections.emptyList();
+        if (partitioned()) return AttendancePartitions.employeeRecords(ym, employeeNo);
+
+        List<AttendanceRecord> list = month(ym).get(employeeNo);
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    private static void indexRecord(AttendanceRecord r) {
+        if (r.getEmployeeNumber() == null || r.getDate() == null) return;
+
+        List<AttendanceRecord> list = index
+                .computeIfAbsent(YearMonth.from(r.getDate()), k -> new HashMap<>())
+                .computeIfAbsent(r.getEmployeeNumber(), k -> new ArrayList<>());
+
+        // Insert at the sorted position so the list never needs a full sort
+        int pos = Collections.binarySearch(list, r, DAY_ORDER);
+        list.add(pos < 0 ? -pos - 1 : pos, r);
+    }
+
+    private static void unindexRecord(AttendanceRecord r) {
+        if (r.getEmployeeNumber() == null || r.getDate() == null) return;
+
+        Map<String, List<AttendanceRecord>> month = index.get(YearMonth.from(r.getDate()));
+        if (month == null) return;
+
+        List<AttendanceRecord> list = month.get(r.getEmployeeNumber());
+        if (list == null) return;
+
+        // Remove the same object, not just an equal-looking one
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == r) {
+                list.remove(i);
+                break;
+            }
+        }
+        if (list.isEmpty()) month.remove(r.getEmployeeNumber());
+    }
+
+    /*
+     * This finds the exact attendance record to edit or delete
+     * using employee number, date, log in, and log out.
+     */
+    private static int findRecordIndex(AttendanceRecord key) {
+        if (key.getDate() == null || index == null) return -1;
+
+        for (AttendanceRecord r : bucket(key.getEmployeeNumber(), YearMonth.from(key.getDate()))) {
+            if (!AttendanceUtil.sameKey(r, key)) continue;
+
+            for (int i = 0; i < allRecords.size(); i++) {
+                if (allRecords.get(i) == r) return i;
+            }
+        }
+        return -1;
+    }
+
+    private static AttendanceRecord copyOf(AttendanceRecord r) {
+        return new AttendanceRecord(
+                r.getEmployeeNumber(),
+                r.getLastName(),
+                r.getFirstName(),
+                r.getDate(),
+                r.getLogIn(),
+                r.getLogOut()
+        );
+    }
+}
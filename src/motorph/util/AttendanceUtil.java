@@ -2,8 +2,12 @@ package motorph.util;
 
 import motorph.model.AttendanceEntry;
 import motorph.model.AttendanceRecord;
+import motorph.model.PayPeriod;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -12,6 +16,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 public class AttendanceUtil {
 
@@ -19,15 +24,21 @@ public class AttendanceUtil {
 
     // Company attendance rules used for late checking
     private static final LocalTime START_TIME = LocalTime.of(8, 0);
-    private static final int GRACE_MINUTES = 10;
+    static final int GRACE_MINUTES = 10;
 
     // This header must match the CSV file format exactly
-    private static final String HEADER = "Employee #,Last Name,First Name,Date,Log In,Log Out";
+    static final String HEADER = "Employee #,Last Name,First Name,Date,Log In,Log Out";
 
     // These formats are used when saving date and time back to CSV
     private static final DateTimeFormatter OUT_DATE = DateTimeFormatter.ofPattern("MM/dd/yyyy");
     private static final DateTimeFormatter OUT_TIME = DateTimeFormatter.ofPattern("HH:mm");
 
+    // Row order of the attendance files: employee number, then date, then log in
+    static final Comparator<AttendanceRecord> FILE_ORDER =
+            Comparator.comparing(AttendanceRecord::getEmployeeNumber, Comparator.nullsLast(String::compareTo))
+                    .thenComparing(AttendanceRecord::getDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                    .thenComparing(AttendanceRecord::getLogIn, Comparator.nullsLast(Comparator.naturalOrder()));
+
     public static class AttendanceSummary {
         public final int daysPresent;
         public final int totalLateMinutes;
@@ -38,13 +49,82 @@ public class AttendanceUtil {
         }
     }
 
+    /*
+     * This holds one employee's attendance for a month split at the
+     * semi-monthly cutoff: day 1 to 15, and day 16 to the end.
+     */
+    public static class CutoffSummary {
+        public final AttendanceSummary firstHalf;
+        public final AttendanceSummary secondHalf;
+
+        public CutoffSummary(AttendanceSummary firstHalf, AttendanceSummary secondHalf) {
+            this.firstHalf = firstHalf;
+            this.secondHalf = secondHalf;
+        }
+
+        public AttendanceSummary of(PayPeriod.Half half) {
+            return half == PayPeriod.Half.FIRST ? firstHalf : secondHalf;
+        }
+    }
+
     /*
      * This summarizes an employee's attendance for a given month.
      * It returns total days present and total late minutes.
      */
     public static AttendanceSummary summarizeForEmployeeMonth(String employeeNo, YearMonth ym) {
-        List<AttendanceEntry> entries = loadEntriesForEmployeeMonth(employeeNo, ym);
+        return AttendanceRepository.summarizeForEmployeeMonth(employeeNo, ym);
+    }
+
+    /*
+     * This summarizes all employees for a given month at once.
+     * The map is keyed by employee number; employees with no records are absent.
+     */
+    public static Map<String, AttendanceSummary> summarizeAllForMonth(YearMonth ym) {
+        return AttendanceRepository.summarizeAllForMonth(ym);
+    }
+
+    /*
+     * This summarizes all employees for every month of a range at once,
+     * keyed by month and then by employee number.
+     */
+    public static Map<YearMonth, Map<String, AttendanceSummary>> summarizeAllForRange(YearMonth from, YearMonth to) {
+        return AttendanceRepository.summarizeAllForRange(from, to);
+    }
+
+    /*
+     * These do the same, but split each summary at the semi-monthly cutoff.
+     * Both halves come from the same pass over the month's records.
+     */
+    public static CutoffSummary summarizeForEmployeeMonthByCutoff(String employeeNo, YearMonth ym) {
+        return AttendanceRepository.summarizeForEmployeeMonthByCutoff(employeeNo, ym);
+    }
+
+    public static Map<String, CutoffSummary> summarizeAllForMonthByCutoff(YearMonth ym) {
+        return AttendanceRepository.summarizeAllForMonthByCutoff(ym);
+    }
+
+    /*
+     * This adds up days present and late minutes of each cutoff
+     * in one pass over a list of complete attendance entries.
+     */
+    public static CutoffSummary summarizeByCutoff(List<AttendanceEntry> entries) {
+        int[] days = new int[2];
+        int[] late = new int[2];
+
+        for (AttendanceEntry e : entries) {
+            int h = e.getDate().getDayOfMonth() <= PayPeriod.CUTOFF_DAY ? 0 : 1;
+            days[h]++;
+            late[h] += (int) computeLateMinutesWithGrace(e.getTimeIn(), GRACE_MINUTES);
+        }
+
+        return new CutoffSummary(new AttendanceSummary(days[0], late[0]), new AttendanceSummary(days[1], late[1]));
+    }
 
+    /*
+     * This adds up days present and late minutes
+     * from a list of complete attendance entries.
+     */
+    public static AttendanceSummary summarize(List<AttendanceEntry> entries) {
         int daysPresent = entries.size();
         int totalLateMinutes = 0;
 
@@ -56,18 +136,7 @@ public class AttendanceUtil {
     }
 
     public static List<AttendanceRecord> loadRecordsForEmployeeMonth(String employeeNo, YearMonth ym) {
-        List<AttendanceRecord> list = new ArrayList<>();
-        for (AttendanceRecord r : loadAllRecords()) {
-            if (!employeeNo.equals(r.getEmployeeNumber())) continue;
-            if (r.getDate() == null) continue;
-            if (!YearMonth.from(r.getDate()).equals(ym)) continue;
-            list.add(r);
-        }
-
-        list.sort(Comparator.comparing(AttendanceRecord::getDate)
-                .thenComparing(AttendanceRecord::getLogIn, Comparator.nullsLast(Comparator.naturalOrder())));
-
-        return list;
+        return AttendanceRepository.findRecordsForEmployeeMonth(employeeNo, ym);
     }
 
     /*
@@ -75,9 +144,15 @@ public class AttendanceUtil {
      * used in payroll computation and timecard display.
      */
     public static List<AttendanceEntry> loadEntriesForEmployeeMonth(String employeeNo, YearMonth ym) {
-        List<AttendanceEntry> list = new ArrayList<>();
-        List<AttendanceRecord> records = loadRecordsForEmployeeMonth(employeeNo, ym);
+        return AttendanceRepository.findEntriesForEmployeeMonth(employeeNo, ym);
+    }
 
+    /*
+     * This keeps only records with a date, log in, and log out,
+     * since incomplete days are not counted in payroll.
+     */
+    public static List<AttendanceEntry> toEntries(List<AttendanceRecord> records) {
+        List<AttendanceEntry> list = new ArrayList<>();
         for (AttendanceRecord r : records) {
             if (r.getDate() == null || r.getLogIn() == null || r.getLogOut() == null) continue;
             list.add(new AttendanceEntry(r.getEmployeeNumber(), r.getDate(), r.getLogIn(), r.getLogOut()));
@@ -86,41 +161,26 @@ public class AttendanceUtil {
     }
 
     public static void addRecord(AttendanceRecord record) throws IOException {
-        List<AttendanceRecord> all = loadAllRecords();
-        all.add(record);
-        saveAllRecords(all);
+        AttendanceRepository.add(record);
     }
 
     public static void updateRecord(AttendanceRecord originalKey, AttendanceRecord updated) throws IOException {
-        List<AttendanceRecord> all = loadAllRecords();
-        int idx = findRecordIndex(all, originalKey);
-        if (idx == -1) throw new IOException("Record not found to update.");
-        all.set(idx, updated);
-        saveAllRecords(all);
+        AttendanceRepository.update(originalKey, updated);
     }
 
     public static void deleteRecord(AttendanceRecord key) throws IOException {
-        List<AttendanceRecord> all = loadAllRecords();
-        int idx = findRecordIndex(all, key);
-        if (idx == -1) throw new IOException("Record not found to delete.");
-        all.remove(idx);
-        saveAllRecords(all);
+        AttendanceRepository.delete(key);
     }
 
     /*
-     * This finds the exact attendance record to edit or delete
+     * This checks if two records point to the same attendance entry
      * using employee number, date, log in, and log out.
      */
-    private static int findRecordIndex(List<AttendanceRecord> all, AttendanceRecord key) {
-        for (int i = 0; i < all.size(); i++) {
-            AttendanceRecord r = all.get(i);
-            if (!safeEq(r.getEmployeeNumber(), key.getEmployeeNumber())) continue;
-            if (!safeEq(r.getDate(), key.getDate())) continue;
-            if (!safeEq(r.getLogIn(), key.getLogIn())) continue;
-            if (!safeEq(r.getLogOut(), key.getLogOut())) continue;
-            return i;
-        }
-        return -1;
+    static boolean sameKey(AttendanceRecord r, AttendanceRecord key) {
+        return safeEq(r.getEmployeeNumber(), key.getEmployeeNumber())
+                && safeEq(r.getDate(), key.getDate())
+                && safeEq(r.getLogIn(), key.getLogIn())
+                && safeEq(r.getLogOut(), key.getLogOut());
     }
 
     private static boolean safeEq(Object a, Object b) {
@@ -129,67 +189,137 @@ public class AttendanceUtil {
         return a.equals(b);
     }
 
+    static File dataFile() {
+        return new File(ATTENDANCE_CSV_PATH);
+    }
+
     /*
      * This loads all attendance records from the CSV file.
+     * The file is read through MappedAttendanceReader, which parses the bytes directly.
+     * With month files, every month is read.
      */
     public static List<AttendanceRecord> loadAllRecords() {
-        ensureFileExists();
-
-        List<AttendanceRecord> list = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(ATTENDANCE_CSV_PATH))) {
-            String line = br.readLine(); // header
-            if (line == null) return list;
-
-            while ((line = br.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
+        if (AttendancePartitions.enabled() && !AttendancePartitions.migrationPending()) {
+            List<AttendanceRecord> all = AttendancePartitions.loadAll();
+            all.sort(FILE_ORDER);
+            return all;
+        }
 
-                String[] p = line.split(",", -1);
-                if (p.length < 6) continue;
+        ensureFileExists();
 
-                AttendanceRecord r = new AttendanceRecord();
-                r.setEmployeeNumber(p[0].trim());
-                r.setLastName(p[1].trim());
-                r.setFirstName(p[2].trim());
-                r.setDate(parseDateFlexible(p[3].trim()));
-                r.setLogIn(parseTimeFlexible(p[4].trim()));
-                r.setLogOut(parseTimeFlexible(p[5].trim()));
+        List<AttendanceRecord> list;
+        try {
+            list = MappedAttendanceReader.readRecords(dataFile());
 
-                list.add(r);
-            }
-        } catch (Exception ignored) {}
+            // Changes not yet folded into the CSV file are applied on top of it
+            AttendanceJournal.replay(list);
+        } catch (IOException e) {
+            // An unreadable file or journal must not look like a file without attendance
+            throw new RuntimeException(e);
+        }
 
-        list.sort(Comparator.comparing(AttendanceRecord::getEmployeeNumber, Comparator.nullsLast(String::compareTo))
-                .thenComparing(AttendanceRecord::getDate, Comparator.nullsLast(Comparator.naturalOrder()))
-                .thenComparing(AttendanceRecord::getLogIn, Comparator.nullsLast(Comparator.naturalOrder())));
+        list.sort(FILE_ORDER);
 
         return list;
     }
 
     /*
-     * This rewrites the whole attendance file
-     * after add, update, or delete operations.
+     * This rewrites the whole attendance file.
+     * The rows are written to a temporary file first and then moved
+     * over the old file, so a failed write never leaves half a file behind.
+     * The records must include the journal's changes: the file is stamped
+     * with the next journal generation and a new empty journal is started.
+     * With month files, only the months whose rows changed are rewritten.
      */
     public static void saveAllRecords(List<AttendanceRecord> records) throws IOException {
+        if (AttendancePartitions.enabled() && !AttendancePartitions.migrationPending()) {
+            AttendancePartitions.saveAll(records);
+            return;
+        }
+
         ensureFileExists();
 
-        try (PrintWriter pw = new PrintWriter(new FileWriter(ATTENDANCE_CSV_PATH))) {
-            pw.println(HEADER);
+        File target = dataFile();
+        File temp = new File(ATTENDANCE_CSV_PATH + ".tmp");
+        long generation = AttendanceJournal.nextGeneration();
+
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(temp)))) {
+            pw.println(HEADER + "," + AttendanceJournal.BASE_MARKER + generation);
 
             for (AttendanceRecord r : records) {
-                String date = (r.getDate() == null) ? "" : r.getDate().format(OUT_DATE);
-                String in = (r.getLogIn() == null) ? "" : r.getLogIn().format(OUT_TIME);
-                String out = (r.getLogOut() == null) ? "" : r.getLogOut().format(OUT_TIME);
-
-                pw.println(String.join(",",
-                        safeCsv(r.getEmployeeNumber()),
-                        safeCsv(r.getLastName()),
-                        safeCsv(r.getFirstName()),
-                        safeCsv(date),
-                        safeCsv(in),
-                        safeCsv(out)
-                ));
+                pw.println(toFields(r));
             }
         }
+
+        try {
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // If the program stops before this, the journal is one generation behind and skipped
+        AttendanceJournal.reset(generation);
+    }
+
+    /*
+     * This converts one record into the six CSV columns
+     * used by both the attendance file and the attendance journal.
+     */
+    static String toFields(AttendanceRecord r) {
+        String date = (r.getDate() == null) ? "" : r.getDate().format(OUT_DATE);
+        String in = (r.getLogIn() == null) ? "" : r.getLogIn().format(OUT_TIME);
+        String out = (r.getLogOut() == null) ? "" : r.getLogOut().format(OUT_TIME);
+
+        return CsvCodec.row(
+                safeCsv(r.getEmployeeNumber()),
+                safeCsv(r.getLastName()),
+                safeCsv(r.getFirstName()),
+                safeCsv(date),
+                safeCsv(in),
+                safeCsv(out)
+        );
+    }
+
+    /*
+     * This finds the six attendance columns by their header names.
+     * Files written in the usual column order fall back to those positions.
+     */
+    static int[] headerColumns(CsvCodec.Header h) {
+        String[] names = HEADER.split(",");
+        int[] cols = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            int idx = h.indexOf(names[i]);
+            cols[i] = (idx == -1) ? i : idx;
+        }
+        return cols;
+    }
+
+    /*
+     * This returns the column positions of six attendance fields
+     * stored one after another, starting at the given position.
+     */
+    static int[] consecutiveColumns(int from) {
+        return new int[]{from, from + 1, from + 2, from + 3, from + 4, from + 5};
+    }
+
+    /*
+     * This reads the attendance columns at the given positions from the current row.
+     * It returns null when the row is too short.
+     */
+    static AttendanceRecord fromFields(CsvCodec.Reader p, int[] cols) {
+        for (int c : cols) {
+            if (c >= p.size()) return null;
+        }
+
+        AttendanceRecord r = new AttendanceRecord();
+        r.setEmployeeNumber(p.get(cols[0]));
+        r.setLastName(p.get(cols[1]));
+        r.setFirstName(p.get(cols[2]));
+        r.setDate(parseDateFlexible(p.get(cols[3])));
+        r.setLogIn(parseTimeFlexible(p.get(cols[4])));
+        r.setLogOut(parseTimeFlexible(p.get(cols[5])));
+        return r;
     }
 
     private static String safeCsv(String s) {
@@ -223,6 +353,18 @@ public class AttendanceUtil {
         return 0;
     }
 
+    /*
+     * This is the same late check for a log in given as minutes after midnight,
+     * as kept by CompactAttendanceStore. A negative value means no log in.
+     */
+    public static int computeLateMinutesWithGrace(int timeInMinute, int graceMinutes) {
+        int start = START_TIME.getHour() * 60 + START_TIME.getMinute();
+        if (timeInMinute > start + graceMinutes) {
+            return timeInMinute - start;
+        }
+        return 0;
+    }
+
     /*
      * This computes total worked hours based on log in and log out.
      */
@@ -233,7 +375,7 @@ public class AttendanceUtil {
         return minutes / 60.0;
     }
 
-    private static LocalDate parseDateFlexible(String s) {
+    static LocalDate parseDateFlexible(String s) {
         if (s == null || s.isBlank()) return null;
 
         DateTimeFormatter[] formats = new DateTimeFormatter[]{
@@ -247,7 +389,7 @@ public class AttendanceUtil {
         return null;
     }
 
-    private static LocalTime parseTimeFlexible(String s) {
+    static LocalTime parseTimeFlexible(String s) {
         if (s == null || s.isBlank()) return null;
 
         DateTimeFormatter[] formats = new DateTimeFormatter[]{
@@ -31,20 +31,20 @@ public class CSVUtil {
         File file = new File(USER_FILE);
         if (!file.exists()) return users;
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            boolean first = true;
+        try (CsvCodec.Reader r = new CsvCodec.Reader(new BufferedReader(new FileReader(file)))) {
+            if (!r.next()) return users;
 
-            while ((line = br.readLine()) != null) {
-                if (first) { first = false; continue; }
-                if (line.trim().isEmpty()) continue;
+            CsvCodec.Header h = new CsvCodec.Header(r);
+            int usernameCol = h.indexOf("Username");
+            int passwordCol = h.indexOf("Password");
+            int roleCol = h.indexOf("Role");
+            int employeeCol = h.indexOf("Employee #");
 
-                String[] p = line.split(",", -1);
-
-                String username = p.length > 0 ? p[0].trim() : "";
-                String password = p.length > 1 ? p[1].trim() : "";
-                String roleText = p.length > 2 ? p[2].trim().toUpperCase() : "REGULAR";
-                String employeeNumber = p.length > 3 ? p[3].trim() : "";
+            while (r.next()) {
+                String username = r.get(usernameCol);
+                String password = r.get(passwordCol);
+                String roleText = r.get(roleCol).toUpperCase();
+                String employeeNumber = r.get(employeeCol);
 
                 if (username.isEmpty() || password.isEmpty()) continue;
 
@@ -72,43 +72,57 @@ public class CSVUtil {
         ensureEmployeeFileExists();
 
         List<Employee> employees = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(EMPLOYEE_FILE))) {
-            String line;
-            boolean firstLine = true;
-
-            while ((line = br.readLine()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue;
-                }
-                if (line.trim().isEmpty()) continue;
-
-                String[] c = line.split(",", -1);
-                if (c.length < 19) continue;
+        try (CsvCodec.Reader r = new CsvCodec.Reader(new BufferedReader(new FileReader(EMPLOYEE_FILE)))) {
+            if (!r.next()) return employees;
+
+            CsvCodec.Header h = new CsvCodec.Header(r);
+            int empNoCol = h.indexOf("Employee #");
+            int lastNameCol = h.indexOf("Last Name");
+            int firstNameCol = h.indexOf("First Name");
+            int birthdayCol = h.indexOf("Birthday");
+            int addressCol = h.indexOf("Address");
+            int phoneCol = h.indexOf("Phone Number");
+            int sssCol = h.indexOf("SSS #");
+            int philHealthCol = h.indexOf("Philhealth #");
+            int tinCol = h.indexOf("TIN #");
+            int pagIbigCol = h.indexOf("Pag-ibig #");
+            int statusCol = h.indexOf("Status");
+            int positionCol = h.indexOf("Position");
+            int supervisorCol = h.indexOf("Immediate Supervisor");
+            int basicCol = h.indexOf("Basic Salary");
+            int riceCol = h.indexOf("Rice Subsidy");
+            int phoneAllowCol = h.indexOf("Phone Allowance");
+            int clothingCol = h.indexOf("Clothing Allowance");
+            int semiMonthlyCol = h.indexOf("Gross Semi-monthly Rate");
+            int hourlyCol = h.indexOf("Hourly Rate");
+
+            while (r.next()) {
+                String empNo = r.get(empNoCol);
+                if (empNo.isEmpty()) continue;
 
                 Employee e = new Employee();
-                e.setEmployeeNumber(c[0].trim());
-                e.setLastName(c[1].trim());
-                e.setFirstName(c[2].trim());
-                e.setBirthday(c[3].trim());
-                e.setAddress(c[4].trim());
-                e.setPhoneNumber(c[5].trim());
-
-                e.setSssNumber(c[6].trim());
-                e.setPhilHealthNumber(c[7].trim());
-                e.setTinNumber(c[8].trim());
-                e.setPagIbigNumber(c[9].trim());
-
-                e.setStatus(c[10].trim());
-                e.setPosition(c[11].trim());
-                e.setImmediateSupervisor(c[12].trim());
-
-                e.setBasicSalary(parseDoubleSafe(c[13]));
-                e.setRiceSubsidy(parseDoubleSafe(c[14]));
-                e.setPhoneAllowance(parseDoubleSafe(c[15]));
-                e.setClothingAllowance(parseDoubleSafe(c[16]));
-                e.setGrossSemiMonthlyRate(parseDoubleSafe(c[17]));
-                e.setHourlyRate(parseDoubleSafe(c[18]));
+                e.setEmployeeNumber(empNo);
+                e.setLastName(r.get(lastNameCol));
+                e.setFirstName(r.get(firstNameCol));
+                e.setBirthday(r.get(birthdayCol));
+                e.setAddress(r.get(addressCol));
+                e.setPhoneNumber(r.get(phoneCol));
+
+                e.setSssNumber(r.get(sssCol));
+                e.setPhilHealthNumber(r.get(philHealthCol));
+                e.setTinNumber(r.get(tinCol));
+                e.setPagIbigNumber(r.get(pagIbigCol));
+
+                e.setStatus(r.get(statusCol));
+                e.setPosition(r.get(positionCol));
+                e.setImmediateSupervisor(r.get(supervisorCol));
+
+                e.setBasicSalary(r.getDouble(basicCol, 0.0));
+                e.setRiceSubsidy(r.getDouble(riceCol, 0.0));
+                e.setPhoneAllowance(r.getDouble(phoneAllowCol, 0.0));
+                e.setClothingAllowance(r.getDouble(clothingCol, 0.0));
+                e.setGrossSemiMonthlyRate(r.getDouble(semiMonthlyCol, 0.0));
+                e.setHourlyRate(r.getDouble(hourlyCol, 0.0));
 
                 employees.add(e);
             }
@@ -162,39 +176,34 @@ public class CSVUtil {
 
     /*
      * This searches for an employee using the employee number.
+     * The lookup goes through EmployeeRepository, so the file is not read every time.
      */
     public static Employee findEmployeeByNumber(String empNo) {
-        if (empNo == null || empNo.trim().isEmpty()) return null;
-
-        List<Employee> employees = loadEmployees();
-        for (Employee e : employees) {
-            if (empNo.trim().equals(e.getEmployeeNumber())) {
-                return e;
-            }
-        }
-        return null;
+        return EmployeeRepository.findByEmployeeNumber(empNo);
     }
 
-    private static String toEmployeeCsvRow(Employee e) {
-        return safe(e.getEmployeeNumber()) + "," +
-                safe(e.getLastName()) + "," +
-                safe(e.getFirstName()) + "," +
-                safe(e.getBirthday()) + "," +
-                safe(e.getAddress()) + "," +
-                safe(e.getPhoneNumber()) + "," +
-                safe(e.getSssNumber()) + "," +
-                safe(e.getPhilHealthNumber()) + "," +
-                safe(e.getTinNumber()) + "," +
-                safe(e.getPagIbigNumber()) + "," +
-                safe(e.getStatus()) + "," +
-                safe(e.getPosition()) + "," +
-                safe(e.getImmediateSupervisor()) + "," +
-                e.getBasicSalary() + "," +
-                e.getRiceSubsidy() + "," +
-                e.getPhoneAllowance() + "," +
-                e.getClothingAllowance() + "," +
-                e.getGrossSemiMonthlyRate() + "," +
-                e.getHourlyRate();
+    static String toEmployeeCsvRow(Employee e) {
+        return CsvCodec.row(
+                safe(e.getEmployeeNumber()),
+                safe(e.getLastName()),
+                safe(e.getFirstName()),
+                safe(e.getBirthday()),
+                safe(e.getAddress()),
+                safe(e.getPhoneNumber()),
+                safe(e.getSssNumber()),
+                safe(e.getPhilHealthNumber()),
+                safe(e.getTinNumber()),
+                safe(e.getPagIbigNumber()),
+                safe(e.getStatus()),
+                safe(e.getPosition()),
+                safe(e.getImmediateSupervisor()),
+                String.valueOf(e.getBasicSalary()),
+                String.valueOf(e.getRiceSubsidy()),
+                String.valueOf(e.getPhoneAllowance()),
+                String.valueOf(e.getClothingAllowance()),
+                String.valueOf(e.getGrossSemiMonthlyRate()),
+                String.valueOf(e.getHourlyRate())
+        );
     }
 
     /*
@@ -219,18 +228,6 @@ public class CSVUtil {
 
     private static String safe(String s) {
         if (s == null) return "";
-        return s.replace(",", " ").trim();
-    }
-
-    /*
-     * This safely converts text to double.
-     * If the value is invalid, it returns 0.0.
-     */
-    private static double parseDoubleSafe(String s) {
-        try {
-            return Double.parseDouble(s.trim());
-        } catch (Exception e) {
-            return 0.0;
-        }
+        return s.trim();
     }
 }
\ No newline at end of file
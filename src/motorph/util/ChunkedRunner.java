@@ -0,0 +1,102 @@
+package motorph.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/*
+ * This class splits a run of work into chunks and computes them on an
+ * executor. The work is a number of groups (months, scenarios) of the
+ * same size, and a chunk is a range of indexes inside one group.
+ * Small runs, or a parallelism of 1, are computed on the calling thread.
+ *
+ * Every index belongs to exactly one chunk, so a task that writes its
+ * results into arrays by index needs no locking. run() returns after
+ * Future.get() of every chunk, which makes those writes visible.
+ */
+public class ChunkedRunner {
+
+    // Below this many items in a run the work is too small to be worth splitting
+    public static final int MIN_PARALLEL_SIZE = 64;
+
+    public interface RangeTask {
+        void run(int group, int from, int to);
+    }
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final String name;
+
+    /*
+     * The name is used in error messages, as in "Payroll run failed."
+     */
+    public ChunkedRunner(ExecutorService executor, int parallelism, String name) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.name = name;
+    }
+
+    public int getParallelism() { return parallelism; }
+
+    public boolean isWorthSplitting(long items) {
+        return items >= MIN_PARALLEL_SIZE && parallelism > 1;
+    }
+
+    public void run(int size, RangeTask task) {
+        run(1, size, task);
+    }
+
+    /*
+     * This runs the task over every group and returns when all of it is done.
+     * A few chunks per thread keeps all cores busy when some chunks finish early.
+     */
+    public void run(int groups, int size, RangeTask task) {
+        if (!isWorthSplitting((long) groups * size)) {
+            for (int g = 0; g < groups; g++) {
+                task.run(g, 0, size);
+            }
+            return;
+        }
+
+        int chunksPerGroup = Math.max(1, parallelism * 4 / groups);
+        int chunkSize = Math.max(1, (size + chunksPerGroup - 1) / chunksPerGroup);
+
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int g = 0; g < groups; g++) {
+                int group = g;
+                for (int start = 0; start < size; start += chunkSize) {
+                    int from = start;
+                    int to = Math.min(size, start + chunkSize);
+                    futures.add(executor.submit(() -> task.run(group, from, to)));
+                }
+            }
+
+            for (Future<?> f : futures) {
+                await(f);
+            }
+        } finally {
+            // Only does something when a chunk failed and the rest are not needed
+            for (Future<?> f : futures) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    public Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    public void await(Future<?> f) {
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(name + " was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(name + " failed.", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package motorph.util;
+
+import motorph.model.AttendanceEntry;
+import motorph.model.AttendanceRecord;
+import motorph.model.Employee;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/*
+ * This class holds a month of attendance rows as parallel primitive arrays:
+ * an int employee id, an int epoch day, and the minute of the day of the
+ * log in and log out.
+ *
+ * In the month-file layout this is the only form a month is kept in; there
+ * are no AttendanceRecord objects behind it. Names are not stored per row.
+ * A row whose names are the employee's names in employees.csv keeps none,
+ * and they are looked up in EmployeeRepository when the row is turned back
+ * into an AttendanceRecord for display or editing. The few rows with other
+ * names point into a small table of name pairs, so the file is written
+ * back with the names it had.
+ *
+ * Rows are sorted by employee id, then date and log in, so each employee's
+ * rows are one range of the arrays, and summaries walk that range without
+ * boxing or creating any objects.
+ *
+ * Each store numbers its own employees 0, 1, 2, ... in employee number
+ * order. A store never changes once built; adding a row gives a new store,
+ * so lookups need no lock.
+ */
+public class CompactAttendanceStore {
+
+    // Minute value of a missing log in or log out
+    private static final short NO_TIME = -1;
+
+    // Name value of a row that has the employee's own names
+    private static final short EMPLOYEE_NAMES = -1;
+
+    // Employee number to id and back, for this store only
+    private final Map<String, Integer> ids;
+    private final String[] numbers;
+
+    private final int[] employee;
+    private final int[] epochDay;
+    private final short[] timeIn;
+    private final short[] timeOut;
+    private final short[] name;
+    private final int size;
+
+    // Names of rows that differ from the employee table, as last name and first name pairs
+    private final String[] lastNames;
+    private final String[] firstNames;
+
+    private CompactAttendanceStore(int capacity, Map<String, Integer> ids, String[] numbers,
+                                   String[] lastNames, String[] firstNames) {
+        this.ids = ids;
+        this.numbers = numbers;
+        this.lastNames = lastNames;
+        this.firstNames = firstNames;
+        employee = new int[capacity];
+        epochDay = new int[capacity];
+        timeIn = new short[capacity];
+        timeOut = new short[capacity];
+        name = new short[capacity];
+        size = capacity;
+    }
+
+    /*
+     * This builds a store from the records of one month. It returns null
+     * when a record has no employee number or date, or a time with seconds,
+     * because minutes alone could then give a different late count.
+     */
+    public static CompactAttendanceStore of(Collection<AttendanceRecord> records) {
+        TreeSet<String> employeeNumbers = new TreeSet<>();
+        for (AttendanceRecord r : records) {
+            if (!fits(r)) return null;
+            employeeNumbers.add(r.getEmployeeNumber());
+        }
+
+        // An employee's id is its place in employee number order
+        Map<String, Integer> ids = new HashMap<>();
+        String[] numbers = employeeNumbers.toArray(new String[0]);
+        for (int i = 0; i < numbers.length; i++) {
+            ids.put(numbers[i], i);
+        }
+
+        List<AttendanceRecord> sorted = new ArrayList<>(records);
+        sorted.sort(Comparator.comparing(AttendanceRecord::getEmployeeNumber).thenComparing(AttendanceRepository.DAY_ORDER));
+
+        NameTable names = new NameTable(numbers.length, new String[0], new String[0]);
+        short[] nameRefs = new short[sorted.size()];
+        for (int n = 0; n < nameRefs.length; n++) {
+            AttendanceRecord r = sorted.get(n);
+            nameRefs[n] = names.refOf(ids.get(r.getEmployeeNumber()), r);
+        }
+
+        CompactAttendanceStore s = new CompactAttendanceStore(sorted.size(), ids, numbers,
+                names.lastNames(), names.firstNames());
+        for (int n = 0; n < s.size; n++) {
+            AttendanceRecord r = sorted.get(n);
+            s.employee[n] = ids.get(r.getEmployeeNumber());
+            s.epochDay[n] = (int) r.getDate().toEpochDay();
+            s.timeIn[n] = minuteOf(r.getLogIn());
+            s.timeOut[n] = minuteOf(r.getLogOut());
+            s.name[n] = nameRefs[n];
+        }
+        return s;
+    }
+
+    /*
+     * This returns a store with one more row, after the employee's rows of
+     * the same date and log in. It returns null when the record does not
+     * fit a store, as in of().
+     */
+    public CompactAttendanceStore plus(AttendanceRecord r) {
+        if (!fits(r)) return null;
+
+        // A new employee takes its place in employee number order, moving later ids up by one
+        String empNo = r.getEmployeeNumber();
+        int pos = Arrays.binarySearch(numbers, empNo);
+        boolean newEmployee = pos < 0;
+        int id = newEmployee ? -pos - 1 : pos;
+
+        String[] nextNumbers = numbers;
+        Map<String, Integer> nextIds = ids;
+        if (newEmployee) {
+            nextNumbers = new String[numbers.length + 1];
+            System.arraycopy(numbers, 0, nextNumbers, 0, id);
+            nextNumbers[id] = empNo;
+            System.arraycopy(numbers, id, nextNumbers, id + 1, numbers.length - id);
+
+            nextIds = new HashMap<>();
+            for (int i = 0; i < nextNumbers.length; i++) {
+                nextIds.put(nextNumbers[i], i);
+            }
+        }
+
+        NameTable names = new NameTable(0, lastNames, firstNames);
+        short ref = names.refOf(-1, r);
+
+        int day = (int) r.getDate().toEpochDay();
+        short in = minuteOf(r.getLogIn());
+        int at = newEmployee ? lowerBound(id) : insertPoint(id, day, in);
+
+        CompactAttendanceStore s = new CompactAttendanceStore(size + 1, nextIds, nextNumbers,
+                names.lastNames(), names.firstNames());
+        copyRows(this, 0, s, 0, at);
+        copyRows(this, at, s, at + 1, size - at);
+        if (newEmployee) {
+            for (int i = 0; i < s.size; i++) {
+                if (i != at && s.employee[i] >= id) s.employee[i]++;
+            }
+        }
+
+        s.employee[at] = id;
+        s.epochDay[at] = day;
+        s.timeIn[at] = in;
+        s.timeOut[at] = minuteOf(r.getLogOut());
+        s.name[at] = ref;
+        return s;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * This returns days present and late minutes of one employee.
+     * Only rows with both a log in and a log out are counted.
+     */
+    public AttendanceUtil.AttendanceSummary summarize(String employeeNo) {
+        int id = findId(employeeNo);
+        if (id == -1) return new AttendanceUtil.AttendanceSummary(0, 0);
+
+        int from = lowerBound(id);
+        return summarizeRange(from, upperBound(id, from));
+    }
+
+    /*
+     * This summarizes every employee in the store, keyed by employee number.
+     */
+    public Map<String, AttendanceUtil.AttendanceSummary> summarizeAll() {
+        Map<String, AttendanceUtil.AttendanceSummary> out = new HashMap<>();
+
+        int from = 0;
+        while (from < size) {
+            int to = upperBound(employee[from], from);
+            AttendanceUtil.AttendanceSummary s = summarizeRange(from, to);
+            out.put(numberOf(employee[from]), s);
+            from = to;
+        }
+        return out;
+    }
+
+    /*
+     * These are the same summaries split at a cutoff: rows on or before
+     * cutoffEpochDay go to the first half, later rows to the second.
+     */
+    public AttendanceUtil.CutoffSummary summarizeByCutoff(String employeeNo, int cutoffEpochDay) {
+        int id = findId(employeeNo);
+        if (id == -1) return summarizeRangeByCutoff(0, 0, cutoffEpochDay);
+
+        int from = lowerBound(id);
+        return summarizeRangeByCutoff(from, upperBound(id, from), cutoffEpochDay);
+    }
+
+    public Map<String, AttendanceUtil.CutoffSummary> summarizeAllByCutoff(int cutoffEpochDay) {
+        Map<String, AttendanceUtil.CutoffSummary> out = new HashMap<>();
+
+        int from = 0;
+        while (from < size) {
+            int to = upperBound(employee[from], from);
+            out.put(numberOf(employee[from]), summarizeRangeByCutoff(from, to, cutoffEpochDay));
+            from = to;
+        }
+        return out;
+    }
+
+    /*
+     * This returns the complete entries of one employee, in date order.
+     */
+    public List<AttendanceEntry> entries(String employeeNo) {
+        List<AttendanceEntry> out = new ArrayList<>();
+
+        int id = findId(employeeNo);
+        if (id == -1) return out;
+
+        int from = lowerBound(id);
+        int to = upperBound(id, from);
+        for (int i = from; i < to; i++) {
+            if (timeIn[i] == NO_TIME || timeOut[i] == NO_TIME) continue;
+            out.add(new AttendanceEntry(employeeNo,
+                    LocalDate.ofEpochDay(epochDay[i]),
+                    timeOf(timeIn[i]),
+                    timeOf(timeOut[i])));
+        }
+        return out;
+    }
+
+    /*
+     * This rebuilds one employee's records, in date order, for display or editing.
+     */
+    public List<AttendanceRecord> records(String employeeNo) {
+        List<AttendanceRecord> out = new ArrayList<>();
+
+        int id = findId(employeeNo);
+        if (id == -1) return out;
+
+        int from = lowerBound(id);
+        addRecords(from, upperBound(id, from), out);
+        return out;
+    }
+
+    /*
+     * This rebuilds every record of the store, one employee after another.
+     */
+    public List<AttendanceRecord> allRecords() {
+        List<AttendanceRecord> out = new ArrayList<>(size);
+
+        int from = 0;
+        while (from < size) {
+            int to = upperBound(employee[from], from);
+            addRecords(from, to, out);
+            from = to;
+        }
+        return out;
+    }
+
+    // The rows from..to all belong to one employee, whose names are looked up once
+    private void addRecords(int from, int to, List<AttendanceRecord> out) {
+        if (from >= to) return;
+
+        // An employee taken out of employees.csv since has no names to give
+        String empNo = numberOf(employee[from]);
+        Employee emp = EmployeeRepository.findByEmployeeNumber(empNo);
+        String empLast = emp == null ? null : emp.getLastName();
+        String empFirst = emp == null ? null : emp.getFirstName();
+
+        for (int i = from; i < to; i++) {
+            int ref = name[i];
+            out.add(new AttendanceRecord(empNo,
+                    ref == EMPLOYEE_NAMES ? empLast : lastNames[ref],
+                    ref == EMPLOYEE_NAMES ? empFirst : firstNames[ref],
+                    LocalDate.ofEpochDay(epochDay[i]),
+                    timeIn[i] == NO_TIME ? null : timeOf(timeIn[i]),
+                    timeOut[i] == NO_TIME ? null : timeOf(timeOut[i])));
+        }
+    }
+
+    private AttendanceUtil.AttendanceSummary summarizeRange(int from, int to) {
+        int days = 0;
+        int late = 0;
+        for (int i = from; i < to; i++) {
+            if (timeIn[i] == NO_TIME || timeOut[i] == NO_TIME) continue;
+            days++;
+            late += AttendanceUtil.computeLateMinutesWithGrace(timeIn[i], AttendanceUtil.GRACE_MINUTES);
+        }
+        return new AttendanceUtil.AttendanceSummary(days, late);
+    }
+
+    private AttendanceUtil.CutoffSummary summarizeRangeByCutoff(int from, int to, int cutoffEpochDay) {
+        int[] days = new int[2];
+        int[] late = new int[2];
+        for (int i = from; i < to; i++) {
+            if (timeIn[i] == NO_TIME || timeOut[i] == NO_TIME) continue;
+            int h = epochDay[i] <= cutoffEpochDay ? 0 : 1;
+            days[h]++;
+            late[h] += AttendanceUtil.computeLateMinutesWithGrace(timeIn[i], AttendanceUtil.GRACE_MINUTES);
+        }
+        return new AttendanceUtil.CutoffSummary(
+                new AttendanceUtil.AttendanceSummary(days[0], late[0]),
+                new AttendanceUtil.AttendanceSummary(days[1], late[1]));
+    }
+
+    // First row of the employee, or where it would be
+    private int lowerBound(int id) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (employee[mid] < id) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Row after the last row of the employee
+    private int upperBound(int id, int from) {
+        int lo = from;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (employee[mid] <= id) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Row after the employee's last row on or before the day and log in; a missing log in sorts last
+    private int insertPoint(int id, int day, short in) {
+        int from = lowerBound(id);
+        int to = upperBound(id, from);
+        int key = inOrder(in);
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (epochDay[mid] < day || (epochDay[mid] == day && inOrder(timeIn[mid]) <= key)) from = mid + 1;
+            else to = mid;
+        }
+        return from;
+    }
+
+    private static int inOrder(short minute) {
+        return minute == NO_TIME ? Integer.MAX_VALUE : minute;
+    }
+
+    private static void copyRows(CompactAttendanceStore from, int fromPos, CompactAttendanceStore to, int toPos, int length) {
+        System.arraycopy(from.employee, fromPos, to.employee, toPos, length);
+        System.arraycopy(from.epochDay, fromPos, to.epochDay, toPos, length);
+        System.arraycopy(from.timeIn, fromPos, to.timeIn, toPos, length);
+        System.arraycopy(from.timeOut, fromPos, to.timeOut, toPos, length);
+        System.arraycopy(from.name, fromPos, to.name, toPos, length);
+    }
+
+    private static boolean fits(AttendanceRecord r) {
+        return r.getEmployeeNumber() != null && r.getDate() != null
+                && !hasSeconds(r.getLogIn()) && !hasSeconds(r.getLogOut());
+    }
+
+    private static short minuteOf(LocalTime t) {
+        return t == null ? NO_TIME : (short) (t.getHour() * 60 + t.getMinute());
+    }
+
+    private static LocalTime timeOf(short minute) {
+        return LocalTime.of(minute / 60, minute % 60);
+    }
+
+    private static boolean hasSeconds(LocalTime t) {
+        return t != null && (t.getSecond() != 0 || t.getNano() != 0);
+    }
+
+    private int findId(String employeeNo) {
+        Integer id = employeeNo == null ? null : ids.get(employeeNo);
+        return id == null ? -1 : id;
+    }
+
+    private String numberOf(int id) {
+        return numbers[id];
+    }
+
+    /*
+     * This helper works out the name value of a row while a store is built,
+     * looking each employee up in EmployeeRepository only once.
+     */
+    private static class NameTable {
+        private final Employee[] employees;
+        private final boolean[] looked;
+
+        private final List<String> last = new ArrayList<>();
+        private final List<String> first = new ArrayList<>();
+        private final Map<List<String>, Short> refs = new HashMap<>();
+
+        NameTable(int employeeCount, String[] lastNames, String[] firstNames) {
+            employees = new Employee[employeeCount];
+            looked = new boolean[employeeCount];
+            for (int i = 0; i < lastNames.length; i++) {
+                add(lastNames[i], firstNames[i]);
+            }
+        }
+
+        // id is the row's employee id, or -1 to look the employee up without remembering it
+        short refOf(int id, AttendanceRecord r) {
+            Employee emp;
+            if (id == -1) {
+                emp = EmployeeRepository.findByEmployeeNumber(r.getEmployeeNumber());
+            } else {
+                if (!looked[id]) {
+                    employees[id] = EmployeeRepository.findByEmployeeNumber(r.getEmployeeNumber());
+                    looked[id] = true;
+                }
+                emp = employees[id];
+            }
+
+            if (emp != null && Objects.equals(emp.getLastName(), r.getLastName())
+                    && Objects.equals(emp.getFirstName(), r.getFirstName())) {
+                return EMPLOYEE_NAMES;
+            }
+
+            Short ref = refs.get(Arrays.asList(r.getLastName(), r.getFirstName()));
+            return ref != null ? ref : add(r.getLastName(), r.getFirstName());
+        }
+
+        String[] lastNames() {
+            return last.toArray(new String[0]);
+        }
+
+        String[] firstNames() {
+            return first.toArray(new String[0]);
+        }
+
+        private short add(String lastName, String firstName) {
+            if (last.size() == Short.MAX_VALUE) throw new IllegalStateException("Too many different attendance names in one month.");
+
+            short ref = (short) last.size();
+            last.add(lastName);
+            first.add(firstName);
+            refs.put(Arrays.asList(lastName, firstName), ref);
+            return ref;
+        }
+    }
+}
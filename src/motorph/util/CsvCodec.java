@@ -0,0 +1,345 @@
+package motorph.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * This utility class is the one CSV reader and writer used by all data files.
+ *
+ * Reading is streaming: each record is copied into one reusable char buffer,
+ * and only the start and end of every field are remembered. A String is
+ * created only when a field is asked for, and numbers can be parsed straight
+ * from the buffer. Columns are found by header name, so files keep working
+ * when their columns are in a different order.
+ *
+ * Quoting follows RFC 4180: fields with commas, quotes, or line breaks are
+ * wrapped in double quotes, and quotes inside are doubled.
+ */
+public class CsvCodec {
+
+    private CsvCodec() {}
+
+    /*
+     * This builds one CSV line from the given values.
+     */
+    public static String row(String... vals) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < vals.length; i++) {
+            if (i > 0) sb.append(',');
+            appendField(sb, vals[i]);
+        }
+        return sb.toString();
+    }
+
+    /*
+     * This adds one field, quoting it only when needed.
+     */
+    public static void appendField(StringBuilder sb, String v) {
+        if (v == null) return;
+
+        boolean needsQuotes = false;
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                needsQuotes = true;
+                break;
+            }
+        }
+
+        if (!needsQuotes) {
+            sb.append(v);
+            return;
+        }
+
+        sb.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    /*
+     * This holds the column positions of a header row.
+     * Names are matched without case and surrounding spaces.
+     */
+    public static class Header {
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final String[] names;
+
+        public Header(Reader r) {
+            names = new String[r.size()];
+            for (int i = 0; i < r.size(); i++) {
+                names[i] = r.get(i);
+                positions.putIfAbsent(normalize(names[i]), i);
+            }
+        }
+
+        /*
+         * This returns the position of the first matching name, or -1.
+         * Several names can be given for columns that were renamed over time.
+         */
+        public int indexOf(String... aliases) {
+            for (String a : aliases) {
+                Integer idx = positions.get(normalize(a));
+                if (idx != null) return idx;
+            }
+            return -1;
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        public String name(int i) {
+            return names[i];
+        }
+
+        private static String normalize(String s) {
+            return s.trim().toLowerCase();
+        }
+    }
+
+    /*
+     * This reads CSV records one at a time from a character stream.
+     * Blank lines are skipped. Field values are trimmed.
+     */
+    public static class Reader implements Closeable {
+        private final java.io.Reader in;
+
+        // Stream buffer; a reader of in-memory lines reads the line itself instead
+        private final char[] buf;
+        private String line;
+        private int linePos;
+
+        private int bufPos = 0;
+        private int bufLen = 0;
+
+        private char[] rec = new char[256];
+        private int recLen = 0;
+
+        private int[] starts = new int[32];
+        private int[] ends = new int[32];
+        private int count = 0;
+
+        // True when the only field of the record was written as ""
+        private boolean quotedOnly;
+
+        public Reader(java.io.Reader in) {
+            this.in = in;
+            this.buf = in == null ? null : new char[8192];
+        }
+
+        /*
+         * This reads a single line that is already in memory.
+         */
+        public static Reader ofLine(String line) throws IOException {
+            Reader r = forLines();
+            r.parse(line);
+            return r;
+        }
+
+        /*
+         * This returns a reader for lines that are already in memory.
+         * Each call to parse reuses the same buffers, so reading many
+         * lines this way allocates only the field values asked for.
+         */
+        public static Reader forLines() {
+            return new Reader(null);
+        }
+
+        /*
+         * This makes the given line the current record.
+         * It returns false if the line is blank.
+         */
+        public boolean parse(String line) throws IOException {
+            if (in != null) throw new IllegalStateException("This reader reads a stream.");
+            this.line = line;
+            this.linePos = 0;
+            return next();
+        }
+
+        /*
+         * This moves to the next record. It returns false at the end of the stream.
+         */
+        public boolean next() throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1) return false;
+                if (c == '\n') continue;
+                if (c == '\r') continue;
+
+                parseRecord(c);
+                if (count == 1 && !quotedOnly && get(0).isEmpty()) continue; // blank line
+                return true;
+            }
+        }
+
+        public int size() {
+            return count;
+        }
+
+        /*
+         * This returns a trimmed field, or an empty string if it does not exist.
+         */
+        public String get(int i) {
+            if (i < 0 || i >= count) return "";
+
+            int s = starts[i];
+            int e = ends[i];
+            while (s < e && rec[s] <= ' ') s++;
+            while (e > s && rec[e - 1] <= ' ') e--;
+            return new String(rec, s, e - s);
+        }
+
+        /*
+         * This parses a whole number straight from the buffer.
+         * It returns the default value if the field is not a number.
+         */
+        public int getInt(int i, int def) {
+            if (i < 0 || i >= count) return def;
+
+            int s = starts[i];
+            int e = ends[i];
+            while (s < e && rec[s] <= ' ') s++;
+            while (e > s && rec[e - 1] <= ' ') e--;
+            if (s == e) return def;
+
+            boolean negative = false;
+            if (rec[s] == '-' || rec[s] == '+') {
+                negative = rec[s] == '-';
+                s++;
+                if (s == e) return def;
+            }
+
+            long v = 0;
+            for (int k = s; k < e; k++) {
+                char c = rec[k];
+                if (c < '0' || c > '9') return def;
+                v = v * 10 + (c - '0');
+                if (v > Integer.MAX_VALUE) return def;
+            }
+            return (int) (negative ? -v : v);
+        }
+
+        public double getDouble(int i, double def) {
+            String s = get(i);
+            if (s.isEmpty()) return def;
+            try {
+                return Double.parseDouble(s);
+            } catch (NumberFormatException e) {
+                return def;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) in.close();
+        }
+
+        private void parseRecord(int first) throws IOException {
+            recLen = 0;
+            count = 0;
+            quotedOnly = false;
+
+            int c = first;
+            while (true) {
+                int start = recLen;
+                boolean quoted = false;
+
+                if (c == '"') {
+                    quoted = true;
+                    // Quoted field: commas and line breaks are part of the value
+                    while (true) {
+                        c = read();
+                        if (c == -1) break;
+                        if (c == '"') {
+                            int peek = read();
+                            if (peek == '"') {
+                                put('"');
+                                continue;
+                            }
+                            c = peek;
+                            break;
+                        }
+                        put((char) c);
+                    }
+                    // Anything between the closing quote and the next comma is kept as is
+                    while (c != -1 && c != ',' && c != '\n' && c != '\r') {
+                        put((char) c);
+                        c = read();
+                    }
+                } else {
+                    while (c != -1 && c != ',' && c != '\n' && c != '\r') {
+                        put((char) c);
+                        c = read();
+                    }
+                }
+
+                addField(start, recLen);
+                if (count == 1 && quoted) quotedOnly = true;
+
+                if (c == ',') {
+                    c = read();
+                    if (c == -1 || c == '\n' || c == '\r') {
+                        addField(recLen, recLen); // trailing empty field
+                        break;
+                    }
+                    continue;
+                }
+                break;
+            }
+
+            if (c == '\r') {
+                int peek = read();
+                if (peek != '\n' && peek != -1) unread();
+            }
+        }
+
+        private void addField(int s, int e) {
+            if (count == starts.length) {
+                int[] ns = new int[count * 2];
+                int[] ne = new int[count * 2];
+                System.arraycopy(starts, 0, ns, 0, count);
+                System.arraycopy(ends, 0, ne, 0, count);
+                starts = ns;
+                ends = ne;
+            }
+            starts[count] = s;
+            ends[count] = e;
+            count++;
+        }
+
+        private void put(char c) {
+            if (recLen == rec.length) {
+                char[] n = new char[rec.length * 2];
+                System.arraycopy(rec, 0, n, 0, recLen);
+                rec = n;
+            }
+            rec[recLen++] = c;
+        }
+
+        private int read() throws IOException {
+            if (in == null) {
+                return line == null || linePos >= line.length() ? -1 : line.charAt(linePos++);
+            }
+            if (bufPos == bufLen) {
+                bufLen = in.read(buf, 0, buf.length);
+                bufPos = 0;
+                if (bufLen <= 0) {
+                    bufLen = 0;
+                    return -1;
+                }
+            }
+            return buf[bufPos++];
+        }
+
+        private void unread() {
+            if (in == null) linePos--;
+            else bufPos--;
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package motorph.util;
 
 import motorph.model.Employee;
+import motorph.model.PayPeriod;
 import motorph.model.PayrollRecord;
 
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /*
  * This is the default implementation of the PayrollService interface.
@@ -13,17 +16,93 @@ import java.util.List;
  */
 public class DefaultPayrollService implements PayrollService {
 
+    // Cutoff summary of an employee with no attendance in the month
+    private static final AttendanceUtil.CutoffSummary NO_ATTENDANCE = new AttendanceUtil.CutoffSummary(
+            new AttendanceUtil.AttendanceSummary(0, 0), new AttendanceUtil.AttendanceSummary(0, 0));
+
     /*
      * This computes payroll for one employee for the selected month.
      * If the employee has no attendance, no payroll record is created.
+     * A record computed earlier from the same data is returned from PayrollResultCache.
      */
     @Override
     public PayrollRecord computeForEmployeeMonth(Employee emp, YearMonth ym) {
+        PayrollResultCache.Stamp stamp = PayrollResultCache.stamp(emp, ym);
+        PayrollRecord cached = PayrollResultCache.get(emp, ym, stamp);
+        if (cached != null) return cached;
+
         AttendanceUtil.AttendanceSummary summary =
                 AttendanceUtil.summarizeForEmployeeMonth(emp.getEmployeeNumber(), ym);
 
-        // If there is no attendance, payroll should not be computed.
-        if (summary.daysPresent <= 0) {
+        PayrollRecord pr = computeFromSummary(emp, ym, summary);
+        PayrollResultCache.put(pr, stamp);
+        return pr;
+    }
+
+    /*
+     * This computes payroll for all employees for the selected month.
+     * Attendance for the whole month is summarized once up front
+     * instead of once per employee. Only employees with attendance are included.
+     */
+    @Override
+    public List<PayrollRecord> computeForAllEmployeesMonth(List<Employee> employees, YearMonth ym) {
+        Map<String, AttendanceUtil.AttendanceSummary> summaries = AttendanceUtil.summarizeAllForMonth(ym);
+
+        List<PayrollRecord> out = new ArrayList<>();
+        for (Employee e : employees) {
+            PayrollRecord pr = computeFromSummary(e, ym, summaries.get(e.getEmployeeNumber()));
+            if (pr != null) out.add(pr);
+        }
+        return out;
+    }
+
+    /*
+     * This is the same run, but each employee is reported to the listener
+     * right after it is computed. The run stops early if the listener is cancelled.
+     * An employee that can not be computed is passed to employeeFailed and skipped.
+     */
+    @Override
+    public void computeForAllEmployeesMonth(List<Employee> employees, YearMonth ym, PayrollRunListener listener) {
+        Map<String, AttendanceUtil.AttendanceSummary> summaries = AttendanceUtil.summarizeAllForMonth(ym);
+
+        int total = employees.size();
+        for (int i = 0; i < total; i++) {
+            if (listener.isCancelled()) return;
+
+            Employee e = employees.get(i);
+            PayrollRecord pr = null;
+            try {
+                pr = computeFromSummary(e, ym, summaries.get(e.getEmployeeNumber()));
+            } catch (Exception ex) {
+                listener.employeeFailed(e, ex);
+            }
+            listener.employeeDone(i + 1, total, pr);
+        }
+    }
+
+    /*
+     * This computes every month of a range. Attendance for all the months
+     * is summarized in one call before anything is computed.
+     */
+    @Override
+    public PayrollRangeResult computeForAllEmployeesRange(List<Employee> employees, YearMonth from, YearMonth to) {
+        Map<YearMonth, Map<String, AttendanceUtil.AttendanceSummary>> summaries = AttendanceUtil.summarizeAllForRange(from, to);
+
+        PayrollRangeResult result = new PayrollRangeResult(from, to);
+        for (Map.Entry<YearMonth, Map<String, AttendanceUtil.AttendanceSummary>> month : summaries.entrySet()) {
+            for (Employee e : employees) {
+                result.add(computeFromSummary(e, month.getKey(), month.getValue().get(e.getEmployeeNumber())));
+            }
+        }
+        return result;
+    }
+
+    /*
+     * This turns an attendance summary into a payroll record.
+     * If there is no attendance, payroll should not be computed.
+     */
+    protected PayrollRecord computeFromSummary(Employee emp, YearMonth ym, AttendanceUtil.AttendanceSummary summary) {
+        if (summary == null || summary.daysPresent <= 0) {
             return null;
         }
 
@@ -33,19 +112,67 @@ public class DefaultPayrollService implements PayrollService {
     }
 
     /*
-     * This computes payroll for all employees for the selected month.
-     * Only employees with attendance are included.
+     * This computes payroll for one employee for a semi-monthly pay period.
+     * The second half settles the month's contributions and tax against
+     * the first-half record that was saved, if there is one.
      */
     @Override
-    public List<PayrollRecord> computeForAllEmployeesMonth(List<Employee> employees, YearMonth ym) {
+    public PayrollRecord computeForEmployeePeriod(Employee emp, PayPeriod period) {
+        AttendanceUtil.CutoffSummary summary =
+                AttendanceUtil.summarizeForEmployeeMonthByCutoff(emp.getEmployeeNumber(), period.getMonth());
+
+        PayrollRecord firstHalf = period.isFirstHalf() ? null
+                : PayrollPeriodIOUtil.findPeriodRecord(emp.getEmployeeNumber(), PayPeriod.firstHalf(period.getMonth()));
+
+        return computeFromCutoffSummary(emp, period, summary, firstHalf);
+    }
+
+    /*
+     * This computes payroll for all employees for a semi-monthly pay period.
+     * Both cutoffs of the month are summarized in one pass, and the saved
+     * first-half records are read from memory instead of from the attendance.
+     */
+    @Override
+    public List<PayrollRecord> computeForAllEmployeesPeriod(List<Employee> employees, PayPeriod period) {
+        Map<String, AttendanceUtil.CutoffSummary> summaries =
+                AttendanceUtil.summarizeAllForMonthByCutoff(period.getMonth());
+
+        Map<String, PayrollRecord> firstHalves = period.isFirstHalf()
+                ? Collections.emptyMap()
+                : PayrollPeriodIOUtil.loadPeriodRecords(PayPeriod.firstHalf(period.getMonth()));
+
         List<PayrollRecord> out = new ArrayList<>();
         for (Employee e : employees) {
-            PayrollRecord pr = computeForEmployeeMonth(e, ym);
+            String empNo = e.getEmployeeNumber();
+            PayrollRecord pr = computeFromCutoffSummary(e, period, summaries.get(empNo), firstHalves.get(empNo));
             if (pr != null) out.add(pr);
         }
         return out;
     }
 
+    /*
+     * This turns the month's attendance, split at the cutoff, into the
+     * record of one pay period. A first half without attendance has no record.
+     * A second half without attendance still has one when the first half was
+     * paid: it earns nothing and settles the month's contributions and tax.
+     */
+    protected PayrollRecord computeFromCutoffSummary(Employee emp, PayPeriod period,
+                                                     AttendanceUtil.CutoffSummary summary,
+                                                     PayrollRecord firstHalf) {
+        boolean ownDays = summary != null && summary.of(period.getHalf()).daysPresent > 0;
+        if (period.isFirstHalf()) {
+            return ownDays ? PayrollCalculator.computePeriodPayroll(emp, period, summary, null) : null;
+        }
+
+        boolean firstHalfPaid = firstHalf != null || (summary != null && summary.firstHalf.daysPresent > 0);
+        if (!ownDays && !firstHalfPaid) {
+            return null;
+        }
+
+        if (summary == null) summary = NO_ATTENDANCE;
+        return PayrollCalculator.computePeriodPayroll(emp, period, summary, firstHalf);
+    }
+
     /*
      * This saves a payroll record to the payroll file.
      */
@@ -0,0 +1,163 @@
+package motorph.util;
+
+import motorph.model.Employee;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * This class keeps the employees in memory after the first load,
+ * with a map by employee number for constant-time lookups.
+ * employees.csv is only read again when its size or modification time
+ * changes, and saving goes through this class so the cache stays current.
+ * The file stamp is checked at most once per second, so repeated lookups
+ * from the screens do not touch the disk at all.
+ *
+ * Callers always get copies, so editing an Employee object in a screen
+ * does not change the cache until the list is saved.
+ */
+public class EmployeeRepository {
+
+    private static final String EMPLOYEE_FILE = "data/employees.csv";
+
+    // Employees in file order, and the first row of each employee number
+    private static List<Employee> all;
+    private static Map<String, Employee> byNumber;
+
+    // Version of each employee's row, and the row text it belongs to
+    private static Map<String, Long> versions = new HashMap<>();
+    private static Map<String, String> rowTexts = new HashMap<>();
+    private static long lastVersion = 0;
+
+    private static long loadedModified = -1;
+    private static long loadedSize = -1;
+
+    // Outside changes to employees.csv are noticed within this time
+    private static final long STAMP_CHECK_INTERVAL_NANOS = 1_000_000_000L;
+    private static long lastStampCheck;
+
+    public static synchronized List<Employee> findAll() {
+        ensureLoaded();
+
+        List<Employee> out = new ArrayList<>(all.size());
+        for (Employee e : all) {
+            out.add(copyOf(e));
+        }
+        return out;
+    }
+
+    public static synchronized Employee findByEmployeeNumber(String empNo) {
+        if (empNo == null || empNo.trim().isEmpty()) return null;
+        ensureLoaded();
+
+        Employee e = byNumber.get(empNo.trim());
+        return e == null ? null : copyOf(e);
+    }
+
+    /*
+     * This returns a number that changes whenever the employee's row changes,
+     * whether through saveAll or an outside edit of employees.csv.
+     * Rows that did not change keep their number. It is 0 for an unknown employee.
+     */
+    public static synchronized long versionOf(String empNo) {
+        if (empNo == null) return 0;
+        ensureLoaded();
+
+        Long v = versions.get(empNo.trim());
+        return v == null ? 0 : v;
+    }
+
+    /*
+     * This writes the employees to employees.csv
+     * and keeps them as the cached list.
+     */
+    public static synchronized void saveAll(List<Employee> employees) {
+        CSVUtil.saveEmployees(employees);
+
+        List<Employee> copies = new ArrayList<>(employees.size());
+        for (Employee e : employees) {
+            copies.add(copyOf(e));
+        }
+        fill(copies);
+        rememberStamp();
+    }
+
+    /*
+     * This forces the next lookup to read employees.csv again.
+     */
+    public static synchronized void invalidate() {
+        all = null;
+        byNumber = null;
+        loadedModified = -1;
+        loadedSize = -1;
+    }
+
+    private static void ensureLoaded() {
+        long now = System.nanoTime();
+        if (all != null && now - lastStampCheck < STAMP_CHECK_INTERVAL_NANOS) return;
+        lastStampCheck = now;
+
+        File f = new File(EMPLOYEE_FILE);
+        if (all != null && f.lastModified() == loadedModified && f.length() == loadedSize) return;
+
+        fill(CSVUtil.loadEmployees());
+        rememberStamp();
+    }
+
+    private static void fill(List<Employee> employees) {
+        all = employees;
+        byNumber = new HashMap<>();
+        for (Employee e : employees) {
+            if (e.getEmployeeNumber() != null) byNumber.putIfAbsent(e.getEmployeeNumber(), e);
+        }
+
+        Map<String, String> texts = new HashMap<>();
+        Map<String, Long> vers = new HashMap<>();
+        for (Map.Entry<String, Employee> e : byNumber.entrySet()) {
+            String text = CSVUtil.toEmployeeCsvRow(e.getValue());
+            Long v = versions.get(e.getKey());
+            boolean same = v != null && text.equals(rowTexts.get(e.getKey()));
+
+            texts.put(e.getKey(), text);
+            vers.put(e.getKey(), same ? v : ++lastVersion);
+        }
+        rowTexts = texts;
+        versions = vers;
+    }
+
+    private static void rememberStamp() {
+        File f = new File(EMPLOYEE_FILE);
+        loadedModified = f.lastModified();
+        loadedSize = f.length();
+    }
+
+    static Employee copyOf(Employee e) {
+        Employee c = new Employee();
+        c.setEmployeeNumber(e.getEmployeeNumber());
+        c.setLastName(e.getLastName());
+        c.setFirstName(e.getFirstName());
+        c.setBirthday(e.getBirthday());
+        c.setAddress(e.getAddress());
+        c.setPhoneNumber(e.getPhoneNumber());
+
+        c.setSssNumber(e.getSssNumber());
+        c.setPhilHealthNumber(e.getPhilHealthNumber());
+        c.setTinNumber(e.getTinNumber());
+        c.setPagIbigNumber(e.getPagIbigNumber());
+
+        c.setStatus(e.getStatus());
+        c.setPosition(e.getPosition());
+        c.setImmediateSupervisor(e.getImmediateSupervisor());
+
+        c.setBasicSalary(e.getBasicSalary());
+        c.setRiceSubsidy(e.getRiceSubsidy());
+        c.setPhoneAllowance(e.getPhoneAllowance());
+        c.setClothingAllowance(e.getClothingAllowance());
+        c.setGrossSemiMonthlyRate(e.getGrossSemiMonthlyRate());
+        c.setHourlyRate(e.getHourlyRate());
+        return c;
+    }
+}
@@ -10,6 +10,8 @@ import java.util.*;
 public class LeaveIOUtil {
 
     private static final String PATH = "data/leaves.csv";
+    private static final String HEADER =
+            "Request ID,Employee #,Employee Name,From,To,Reason,Status,Submitted At,Reviewed By,Reviewed At";
     private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     /*
@@ -20,31 +22,37 @@ public class LeaveIOUtil {
         ensureFile();
 
         List<LeaveRequest> list = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(PATH))) {
-            String line;
-            boolean first = true;
-
-            while ((line = br.readLine()) != null) {
-                if (first) { first = false; continue; }
-                if (line.trim().isEmpty()) continue;
-
-                String[] p = line.split(",", -1);
-
+        try (CsvCodec.Reader in = new CsvCodec.Reader(new BufferedReader(new FileReader(PATH)))) {
+            if (!in.next()) return list;
+
+            CsvCodec.Header h = new CsvCodec.Header(in);
+            int idCol = h.indexOf("Request ID");
+            int empCol = h.indexOf("Employee #");
+            int nameCol = h.indexOf("Employee Name");
+            int fromCol = h.indexOf("From");
+            int toCol = h.indexOf("To");
+            int reasonCol = h.indexOf("Reason");
+            int statusCol = h.indexOf("Status");
+            int submittedCol = h.indexOf("Submitted At");
+            int reviewedByCol = h.indexOf("Reviewed By");
+            int reviewedAtCol = h.indexOf("Reviewed At");
+
+            while (in.next()) {
                 LeaveRequest r = new LeaveRequest();
-                r.setRequestId(get(p, 0));
-                r.setEmployeeNumber(get(p, 1));
-                r.setEmployeeName(get(p, 2));
-                r.setFromDate(get(p, 3));
-                r.setToDate(get(p, 4));
-                r.setReason(get(p, 5));
-
-                String st = get(p, 6).toUpperCase();
+                r.setRequestId(in.get(idCol));
+                r.setEmployeeNumber(in.get(empCol));
+                r.setEmployeeName(in.get(nameCol));
+                r.setFromDate(in.get(fromCol));
+                r.setToDate(in.get(toCol));
+                r.setReason(in.get(reasonCol));
+
+                String st = in.get(statusCol).toUpperCase();
                 try { r.setStatus(LeaveRequest.Status.valueOf(st)); }
                 catch (Exception e) { r.setStatus(LeaveRequest.Status.PENDING); }
 
-                r.setSubmittedAt(get(p, 7));
-                r.setReviewedBy(get(p, 8));
-                r.setReviewedAt(get(p, 9));
+                r.setSubmittedAt(in.get(submittedCol));
+                r.setReviewedBy(in.get(reviewedByCol));
+                r.setReviewedAt(in.get(reviewedAtCol));
 
                 list.add(r);
             }
@@ -75,7 +83,7 @@ public class LeaveIOUtil {
     public static void append(LeaveRequest r) {
         ensureFile();
         try (PrintWriter pw = new PrintWriter(new FileWriter(PATH, true))) {
-            pw.println(csv(
+            pw.println(CsvCodec.row(
                     r.getRequestId(),
                     r.getEmployeeNumber(),
                     r.getEmployeeName(),
@@ -99,9 +107,9 @@ public class LeaveIOUtil {
     public static void overwriteAll(List<LeaveRequest> list) {
         ensureFile();
         try (PrintWriter pw = new PrintWriter(new FileWriter(PATH, false))) {
-            pw.println("Request ID,Employee #,Employee Name,From,To,Reason,Status,Submitted At,Reviewed By,Reviewed At");
+            pw.println(HEADER);
             for (LeaveRequest r : list) {
-                pw.println(csv(
+                pw.println(CsvCodec.row(
                         r.getRequestId(),
                         r.getEmployeeNumber(),
                         r.getEmployeeName(),
@@ -145,30 +153,10 @@ public class LeaveIOUtil {
         File f = new File(PATH);
         if (!f.exists()) {
             try (PrintWriter pw = new PrintWriter(new FileWriter(f))) {
-                pw.println("Request ID,Employee #,Employee Name,From,To,Reason,Status,Submitted At,Reviewed By,Reviewed At");
+                pw.println(HEADER);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         }
     }
-
-    private static String get(String[] p, int idx) {
-        if (idx >= p.length) return "";
-        return p[idx] == null ? "" : p[idx].trim();
-    }
-
-    /*
-     * This makes values safer for CSV writing
-     * by removing commas and line breaks.
-     */
-    private static String csv(String... vals) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < vals.length; i++) {
-            String v = (vals[i] == null) ? "" : vals[i];
-            v = v.replace(",", " ").replace("\n", " ").replace("\r", " ");
-            if (i > 0) sb.append(",");
-            sb.append(v);
-        }
-        return sb.toString();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,306 @@
+package motorph.util;
+
+import motorph.model.AttendanceRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * This class reads a whole attendance CSV file through a memory-mapped buffer.
+ *
+ * Dates and times are parsed straight from the bytes into numbers, without
+ * a String per field first. The name strings of a row are reused from the
+ * row before when the bytes are the same, since an employee's rows are
+ * usually next to each other. Every row still becomes an AttendanceRecord;
+ * the single attendance file keeps them, while a month file packs them
+ * into a CompactAttendanceStore and lets them go.
+ *
+ * Rows with quoted fields, and values in formats the byte parser does not
+ * know, are handed to the normal CSV and date parsing, so the result is
+ * the same as reading the file with CsvCodec.
+ */
+public class MappedAttendanceReader {
+
+    // The file is mapped in windows of this size, cut at line breaks
+    private static final long WINDOW = 64L << 20;
+
+    private static final int EMP = 0;
+    private static final int LAST = 1;
+    private static final int FIRST = 2;
+    private static final int DATE = 3;
+    private static final int IN = 4;
+    private static final int OUT = 5;
+
+    // Parser results for a field that is blank or not in a known format
+    private static final int BLANK = -1;
+    private static final int UNKNOWN = -2;
+
+    private int[] cols;
+
+    // The mapped part of the file that is being read
+    private MappedByteBuffer buf;
+
+    // Field bounds of the current row, as offsets into the mapped window
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    // The previous row's strings, reused while the bytes are the same
+    private final byte[][] lastBytes = new byte[3][];
+    private final String[] lastStrings = new String[3];
+
+    private MappedAttendanceReader() {
+    }
+
+    /*
+     * This returns every record of the file, in file order.
+     */
+    public static List<AttendanceRecord> readRecords(File file) throws IOException {
+        List<AttendanceRecord> out = new ArrayList<>();
+        new MappedAttendanceReader().scan(file, out);
+        return out;
+    }
+
+    private void scan(File file, List<AttendanceRecord> records) throws IOException {
+        if (!file.exists()) return;
+
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            long pos = 0;
+            boolean headerDone = false;
+
+            while (pos < size) {
+                long len = Math.min(WINDOW, size - pos);
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+
+                int limit = (int) len;
+                if (pos + len < size) {
+                    // Stop after the last full line; the rest goes into the next window
+                    limit = lastLineBreak(limit) + 1;
+                    if (limit == 0) {
+                        if (len == size - pos) limit = (int) len;
+                        else throw new IOException("Attendance row is longer than " + WINDOW + " bytes.");
+                    }
+                }
+
+                int i = 0;
+                while (i < limit) {
+                    // A line break inside quotes belongs to the field
+                    int lineEnd = i;
+                    boolean inQuotes = false;
+                    while (lineEnd < limit) {
+                        byte b = buf.get(lineEnd);
+                        if (b == '"') inQuotes = !inQuotes;
+                        else if (b == '\n' && !inQuotes) break;
+                        lineEnd++;
+                    }
+
+                    int e = lineEnd;
+                    if (e > i && buf.get(e - 1) == '\r') e--;
+
+                    if (!headerDone) {
+                        readHeader(i, e);
+                        headerDone = true;
+                    } else if (!isBlank(i, e)) {
+                        readRow(i, e, records);
+                    }
+                    i = lineEnd + 1;
+                }
+                pos += limit;
+            }
+        }
+    }
+
+    private void readHeader(int s, int e) throws IOException {
+        String line = decode(s, e);
+        if (!line.isEmpty() && line.charAt(0) == '\uFEFF') line = line.substring(1);
+        cols = AttendanceUtil.headerColumns(new CsvCodec.Header(CsvCodec.Reader.ofLine(line)));
+    }
+
+    private void readRow(int s, int e, List<AttendanceRecord> records) throws IOException {
+        if (!split(s, e)) {
+            // Quoted fields are left to the CSV codec
+            AttendanceRecord r = AttendanceUtil.fromFields(CsvCodec.Reader.ofLine(decode(s, e)), cols);
+            if (r != null) records.add(r);
+            return;
+        }
+
+        for (int c : cols) {
+            if (c >= count) return; // too short, same as AttendanceUtil.fromFields
+        }
+
+        int date = parseDate(cols[DATE]);
+        LocalDate slowDate = null;
+        if (date == UNKNOWN) {
+            slowDate = AttendanceUtil.parseDateFlexible(field(cols[DATE]));
+            if (slowDate != null) date = slowDate.getYear() * 10000 + slowDate.getMonthValue() * 100 + slowDate.getDayOfMonth();
+        }
+
+
+        LocalDate d = date < 0 ? null : (slowDate != null ? slowDate : LocalDate.of(date / 10000, date / 100 % 100, date % 100));
+        LocalTime in = toTime(cols[IN]);
+        LocalTime out = toTime(cols[OUT]);
+
+        AttendanceRecord r = new AttendanceRecord();
+        r.setEmployeeNumber(cached(EMP, cols[EMP]));
+        r.setLastName(cached(LAST, cols[LAST]));
+        r.setFirstName(cached(FIRST, cols[FIRST]));
+        r.setDate(d);
+        r.setLogIn(in);
+        r.setLogOut(out);
+        records.add(r);
+    }
+
+    /*
+     * This finds the field bounds of one row.
+     * It returns false if the row has a quote, which needs the full CSV rules.
+     */
+    private boolean split(int s, int e) {
+        count = 0;
+        int start = s;
+        for (int i = s; i < e; i++) {
+            byte b = buf.get(i);
+            if (b == '"') return false;
+            if (b == ',') {
+                addField(start, i);
+                start = i + 1;
+            }
+        }
+        addField(start, e);
+        return true;
+    }
+
+    private void addField(int s, int e) {
+        // Trim here so every parser works on the bare value
+        while (s < e && (buf.get(s) & 0xff) <= ' ') s++;
+        while (e > s && (buf.get(e - 1) & 0xff) <= ' ') e--;
+
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = s;
+        ends[count] = e;
+        count++;
+    }
+
+    /*
+     * This parses MM/dd/yyyy or yyyy-MM-dd into yyyyMMdd as one number.
+     */
+    private int parseDate(int f) {
+        int s = starts[f];
+        int len = ends[f] - s;
+        if (len == 0) return BLANK;
+        if (len != 10) return UNKNOWN;
+
+        int y, m, d;
+        if (buf.get(s + 2) == '/' && buf.get(s + 5) == '/') {
+            m = digits(s, 2);
+            d = digits(s + 3, 2);
+            y = digits(s + 6, 4);
+        } else if (buf.get(s + 4) == '-' && buf.get(s + 7) == '-') {
+            y = digits(s, 4);
+            m = digits(s + 5, 2);
+            d = digits(s + 8, 2);
+        } else {
+            return UNKNOWN;
+        }
+
+        if (y < 0 || m < 1 || m > 12 || d < 1 || d > daysInMonth(y, m)) return UNKNOWN;
+        return y * 10000 + m * 100 + d;
+    }
+
+    /*
+     * This parses H:mm, HH:mm, H:mm:ss, or HH:mm:ss.
+     */
+    private LocalTime toTime(int f) {
+        int s = starts[f];
+        int len = ends[f] - s;
+        if (len == 0) return null;
+
+        int hLen = len >= 2 && buf.get(s + 1) == ':' ? 1 : 2;
+        int rest = len - hLen;
+        if (len > hLen && buf.get(s + hLen) == ':' && (rest == 3 || (rest == 6 && buf.get(s + hLen + 3) == ':'))) {
+            int h = digits(s, hLen);
+            int m = digits(s + hLen + 1, 2);
+            int sec = rest == 6 ? digits(s + hLen + 4, 2) : 0;
+            if (h >= 0 && h < 24 && m >= 0 && m < 60 && sec >= 0 && sec < 60) {
+                return LocalTime.of(h, m, sec);
+            }
+        }
+        return AttendanceUtil.parseTimeFlexible(field(f));
+    }
+
+    private int digits(int s, int n) {
+        int v = 0;
+        for (int i = 0; i < n; i++) {
+            int c = buf.get(s + i) - '0';
+            if (c < 0 || c > 9) return -1;
+            v = v * 10 + c;
+        }
+        return v;
+    }
+
+    private static int daysInMonth(int y, int m) {
+        if (m == 2) return (y % 4 == 0 && (y % 100 != 0 || y % 400 == 0)) ? 29 : 28;
+        return (m == 4 || m == 6 || m == 9 || m == 11) ? 30 : 31;
+    }
+
+    private String cached(int slot, int f) {
+        int s = starts[f];
+        int len = ends[f] - s;
+
+        byte[] prev = lastBytes[slot];
+        if (prev != null && prev.length == len) {
+            boolean same = true;
+            for (int i = 0; i < len && same; i++) {
+                same = buf.get(s + i) == prev[i];
+            }
+            if (same) return lastStrings[slot];
+        }
+
+        byte[] bytes = copy(s, s + len);
+        lastBytes[slot] = bytes;
+        lastStrings[slot] = new String(bytes, StandardCharsets.UTF_8);
+        return lastStrings[slot];
+    }
+
+    private String field(int f) {
+        return decode(starts[f], ends[f]);
+    }
+
+    private String decode(int s, int e) {
+        return new String(copy(s, e), StandardCharsets.UTF_8);
+    }
+
+    private byte[] copy(int s, int e) {
+        byte[] bytes = new byte[e - s];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(s + i);
+        }
+        return bytes;
+    }
+
+    private boolean isBlank(int s, int e) {
+        for (int i = s; i < e; i++) {
+            if ((buf.get(i) & 0xff) > ' ') return false;
+        }
+        return true;
+    }
+
+    private int lastLineBreak(int limit) {
+        for (int i = limit - 1; i >= 0; i--) {
+            if (buf.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,48 @@
+package motorph.util;
+
+/*
+ * This class does money arithmetic on whole centavos stored in a long.
+ * 1,234.56 pesos is the long 123456.
+ *
+ * Adding and subtracting centavos is exact. Multiplying by a rate is done
+ * as a fraction (value * numerator / denominator) and rounded once, half up,
+ * to the nearest centavo. Nothing here creates objects, so the payroll
+ * calculation can run for thousands of employees without garbage.
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    /*
+     * This converts a peso amount, such as a salary read from a CSV file,
+     * into centavos, rounding half up to the nearest centavo.
+     */
+    public static long ofPesos(double pesos) {
+        return Math.round(pesos * 100.0);
+    }
+
+    /*
+     * This converts centavos back to pesos for the model classes and CSV files.
+     */
+    public static double toPesos(long centavos) {
+        return centavos / 100.0;
+    }
+
+    /*
+     * This returns centavos * numerator / denominator,
+     * rounded half up to the nearest centavo.
+     */
+    public static long times(long centavos, long numerator, long denominator) {
+        if (denominator <= 0) throw new IllegalArgumentException("Denominator must be positive.");
+        return Math.floorDiv(2 * centavos * numerator + denominator, 2 * denominator);
+    }
+
+    /*
+     * This returns the value limited to the range [min, max].
+     */
+    public static long clamp(long centavos, long min, long max) {
+        if (centavos < min) return min;
+        return Math.min(centavos, max);
+    }
+}
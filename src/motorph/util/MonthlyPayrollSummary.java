@@ -0,0 +1,76 @@
+package motorph.util;
+
+import motorph.model.PayrollRecord;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * This class holds the records of one monthly payroll run and its totals.
+ * The totals are kept in centavos and changed by the difference when
+ * a single employee's record is replaced, so correcting one employee
+ * does not add up the whole month again.
+ *
+ * It is not thread-safe; the payroll screen only uses it on the
+ * Event Dispatch Thread.
+ */
+public class MonthlyPayrollSummary {
+
+    private final YearMonth month;
+    private final Map<String, PayrollRecord> records = new LinkedHashMap<>();
+
+    private long totalGov;
+    private long totalTax;
+    private long totalNet;
+
+    public MonthlyPayrollSummary(YearMonth month) {
+        this.month = month;
+    }
+
+    public YearMonth getMonth() { return month; }
+
+    /*
+     * This adds a record, or replaces the employee's record if there is one.
+     */
+    public void add(PayrollRecord pr) {
+        replace(pr.getEmployeeNumber(), pr);
+    }
+
+    /*
+     * This puts the employee's new record in place of the old one and moves
+     * the totals by the difference. A null record removes the employee.
+     * It returns the old record, or null if there was none.
+     */
+    public PayrollRecord replace(String employeeNo, PayrollRecord pr) {
+        PayrollRecord old = pr == null ? records.remove(employeeNo) : records.put(employeeNo, pr);
+
+        if (old != null) apply(old, -1);
+        if (pr != null) apply(pr, 1);
+        return old;
+    }
+
+    public boolean contains(String employeeNo) {
+        return records.containsKey(employeeNo);
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    public List<PayrollRecord> records() {
+        return new ArrayList<>(records.values());
+    }
+
+    public double getTotalGov() { return Money.toPesos(totalGov); }
+    public double getTotalTax() { return Money.toPesos(totalTax); }
+    public double getTotalNet() { return Money.toPesos(totalNet); }
+
+    private void apply(PayrollRecord pr, int sign) {
+        totalGov += sign * Money.ofPesos(pr.getTotalDeductionsBeforeTax());
+        totalTax += sign * Money.ofPesos(pr.getWithholdingTax());
+        totalNet += sign * Money.ofPesos(pr.getNetPay());
+    }
+}
@@ -0,0 +1,184 @@
+package motorph.util;
+
+import motorph.model.Employee;
+import motorph.model.PayrollRecord;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+ * This PayrollService computes a whole month's payroll across all CPU cores.
+ * Attendance is summarized once, then employees are split into chunks and
+ * each chunk is computed on the executor. Results always come back in the
+ * same order as the employee list, no matter which thread finished first.
+ * The chunking itself is done by ChunkedRunner.
+ * If one employee fails, only that employee is skipped and the error is
+ * kept in getLastFailures(); a streaming run also passes it to the listener.
+ */
+public class ParallelPayrollService extends DefaultPayrollService {
+
+    // Largest chunk of a streaming run, so rows keep arriving while it runs
+    private static final int STREAM_CHUNK_SIZE = 16;
+
+    private final ChunkedRunner runner;
+
+    private volatile Map<String, Exception> lastFailures = Collections.emptyMap();
+
+    public ParallelPayrollService() {
+        this(ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+     * This constructor lets the caller choose the executor,
+     * for example a fixed thread pool with a set number of threads.
+     */
+    public ParallelPayrollService(ExecutorService executor, int parallelism) {
+        this.runner = new ChunkedRunner(executor, parallelism, "Payroll run");
+    }
+
+    @Override
+    public List<PayrollRecord> computeForAllEmployeesMonth(List<Employee> employees, YearMonth ym) {
+        Map<String, AttendanceUtil.AttendanceSummary> summaries = AttendanceUtil.summarizeAllForMonth(ym);
+
+        int n = employees.size();
+        PayrollRecord[] results = new PayrollRecord[n];
+        Exception[] errors = new Exception[n];
+
+        runner.run(n, (g, from, to) -> computeRange(employees, ym, summaries, from, to, results, errors));
+
+        List<PayrollRecord> out = new ArrayList<>();
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (results[i] != null) out.add(results[i]);
+            if (errors[i] != null) failures.put(employees.get(i).getEmployeeNumber(), errors[i]);
+        }
+
+        lastFailures = Collections.unmodifiableMap(failures);
+        return out;
+    }
+
+    /*
+     * This streaming run uses small chunks so the first rows arrive quickly.
+     * Chunks are reported in list order as soon as they and every chunk
+     * before them are done. Once the listener is cancelled, chunks that
+     * have not started are skipped and nothing more is reported.
+     */
+    @Override
+    public void computeForAllEmployeesMonth(List<Employee> employees, YearMonth ym, PayrollRunListener listener) {
+        Map<String, AttendanceUtil.AttendanceSummary> summaries = AttendanceUtil.summarizeAllForMonth(ym);
+
+        int n = employees.size();
+        PayrollRecord[] results = new PayrollRecord[n];
+        Exception[] errors = new Exception[n];
+        Map<String, Exception> failures = new LinkedHashMap<>();
+
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            if (!runner.isWorthSplitting(n)) {
+                for (int i = 0; i < n; i++) {
+                    if (listener.isCancelled()) return;
+                    computeRange(employees, ym, summaries, i, i + 1, results, errors);
+                    report(employees, i, n, results, errors, failures, listener);
+                }
+                return;
+            }
+
+            int parallelism = runner.getParallelism();
+            int chunkSize = Math.min(STREAM_CHUNK_SIZE, (n + parallelism - 1) / parallelism);
+            for (int from = 0; from < n; from += chunkSize) {
+                int start = from;
+                int end = Math.min(n, from + chunkSize);
+                futures.add(runner.submit(() -> {
+                    if (!listener.isCancelled()) computeRange(employees, ym, summaries, start, end, results, errors);
+                }));
+            }
+
+            int next = 0;
+            for (Future<?> f : futures) {
+                runner.await(f);
+                if (listener.isCancelled()) return;
+
+                int end = Math.min(n, next + chunkSize);
+                for (; next < end; next++) {
+                    report(employees, next, n, results, errors, failures, listener);
+                }
+            }
+        } finally {
+            for (Future<?> f : futures) {
+                f.cancel(false);
+            }
+            lastFailures = Collections.unmodifiableMap(failures);
+        }
+    }
+
+    /*
+     * The months of a range run are computed together: every month is split
+     * into chunks and all chunks go to the executor at once, so a short
+     * month list still keeps every core busy. Records are added to the
+     * result in month order and then employee list order.
+     */
+    @Override
+    public PayrollRangeResult computeForAllEmployeesRange(List<Employee> employees, YearMonth from, YearMonth to) {
+        Map<YearMonth, Map<String, AttendanceUtil.AttendanceSummary>> summaries = AttendanceUtil.summarizeAllForRange(from, to);
+        List<YearMonth> months = new ArrayList<>(summaries.keySet());
+
+        int n = employees.size();
+        PayrollRecord[][] results = new PayrollRecord[months.size()][n];
+        Exception[][] errors = new Exception[months.size()][n];
+
+        runner.run(months.size(), n, (m, start, end) -> {
+            YearMonth ym = months.get(m);
+            computeRange(employees, ym, summaries.get(ym), start, end, results[m], errors[m]);
+        });
+
+        PayrollRangeResult result = new PayrollRangeResult(from, to);
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        for (int m = 0; m < months.size(); m++) {
+            for (int i = 0; i < n; i++) {
+                result.add(results[m][i]);
+                if (errors[m][i] != null) failures.put(employees.get(i).getEmployeeNumber() + "," + months.get(m), errors[m][i]);
+            }
+        }
+
+        lastFailures = Collections.unmodifiableMap(failures);
+        return result;
+    }
+
+    /*
+     * This returns the employees that failed in the last run,
+     * keyed by employee number, in employee list order.
+     * After a range run the key also has the month, as in "10001,2024-06".
+     */
+    public Map<String, Exception> getLastFailures() {
+        return lastFailures;
+    }
+
+    private void computeRange(List<Employee> employees, YearMonth ym,
+                              Map<String, AttendanceUtil.AttendanceSummary> summaries,
+                              int from, int to, PayrollRecord[] results, Exception[] errors) {
+        for (int i = from; i < to; i++) {
+            Employee e = employees.get(i);
+            try {
+                results[i] = computeFromSummary(e, ym, summaries.get(e.getEmployeeNumber()));
+            } catch (Exception ex) {
+                errors[i] = ex;
+            }
+        }
+    }
+
+    private void report(List<Employee> employees, int i, int total, PayrollRecord[] results, Exception[] errors,
+                        Map<String, Exception> failures, PayrollRunListener listener) {
+        if (errors[i] != null) {
+            failures.put(employees.get(i).getEmployeeNumber(), errors[i]);
+            listener.employeeFailed(employees.get(i), errors[i]);
+        }
+        listener.employeeDone(i + 1, total, results[i]);
+    }
+}
@@ -1,215 +1,349 @@
 package motorph.util;
 
 import motorph.model.Employee;
+import motorph.model.PayPeriod;
 import motorph.model.PayrollRecord;
 
-import java.time.DayOfWeek;
 import java.time.YearMonth;
+import java.util.Collections;
+import java.util.Map;
 
 public class PayrollCalculator {
 
+    // Working-day bits of days 1 to 15 in a WorkingDayCalendar month mask
+    private static final int FIRST_CUTOFF_MASK = (1 << PayPeriod.CUTOFF_DAY) - 1;
+
     /*
      * This method computes the employee's monthly payroll
      * based on attendance, late minutes, salary, allowances,
      * government deductions, and withholding tax.
      */
     public static PayrollRecord computeMonthlyPayroll(Employee emp, YearMonth month, int daysPresent, int lateMinutes) {
+        return computeMonthlyPayroll(emp, month, daysPresent, lateMinutes, Collections.emptyMap());
+    }
+
+    /*
+     * This is the same computation, but a table in rates is used instead of
+     * the one in force for the month, for example to try out a new schedule.
+     */
+    static PayrollRecord computeMonthlyPayroll(Employee emp, YearMonth month, int daysPresent, int lateMinutes,
+                                               Map<RateTables.Kind, RateTable> rates) {
         PayrollRecord pr = new PayrollRecord();
         pr.setEmployeeNumber(emp.getEmployeeNumber());
         pr.setEmployeeName(emp.getFullName());
         pr.setMonth(month);
 
-        double monthlyBasic = emp.getBasicSalary(); // stored as MONTHLY salary
-        double monthlyAllowances = emp.getRiceSubsidy()
-                + emp.getPhoneAllowance()
-                + emp.getClothingAllowance();
+        /*
+         * All amounts are worked out in whole centavos (see Money),
+         * so every total is exactly the sum of the amounts shown on the payslip.
+         */
+        long monthlyBasic = Money.ofPesos(emp.getBasicSalary()); // stored as MONTHLY salary
+        long monthlyAllowances = Money.ofPesos(emp.getRiceSubsidy())
+                + Money.ofPesos(emp.getPhoneAllowance())
+                + Money.ofPesos(emp.getClothingAllowance());
 
         pr.setDaysPresent(daysPresent);
         pr.setLateMinutes(lateMinutes);
 
         /*
-         * This part prorates the salary based on
-         * the number of weekdays in the selected month.
+         * This part prorates the salary based on the number of
+         * working days (weekdays that are not holidays) in the selected month.
          */
-        int workingDaysInMonth = countWeekdaysInMonth(month);
+        int workingDaysInMonth = WorkingDayCalendar.workingDays(month);
         if (workingDaysInMonth <= 0) workingDaysInMonth = 22; // safety fallback
 
-        double prorationFactor = (double) daysPresent / workingDaysInMonth;
-        if (prorationFactor < 0) prorationFactor = 0;
-        if (prorationFactor > 1) prorationFactor = 1;
+        int paidDays = Math.max(0, Math.min(daysPresent, workingDaysInMonth));
 
-        double earnedBasic = monthlyBasic * prorationFactor;
-        double earnedAllowances = monthlyAllowances * prorationFactor;
+        long earnedBasic = Money.times(monthlyBasic, paidDays, workingDaysInMonth);
+        long earnedAllowances = Money.times(monthlyAllowances, paidDays, workingDaysInMonth);
 
-        pr.setMonthlyBasicSalary(round2(earnedBasic));
-        pr.setTotalAllowancesMonthly(round2(earnedAllowances));
+        pr.setMonthlyBasicSalary(Money.toPesos(earnedBasic));
+        pr.setTotalAllowancesMonthly(Money.toPesos(earnedAllowances));
 
         /*
          * This calculates the deduction for late minutes
          * based on the employee's hourly rate.
          */
-        double hourlyRate = emp.getHourlyRate();
-        double lateDeduction = (lateMinutes / 60.0) * hourlyRate;
+        long hourlyRate = Money.ofPesos(emp.getHourlyRate());
+        long lateDeduction = Money.times(hourlyRate, Math.max(0, lateMinutes), 60);
 
-        double earnedBeforeLate = earnedBasic + earnedAllowances;
+        long earnedBeforeLate = earnedBasic + earnedAllowances;
         if (lateDeduction > earnedBeforeLate) {
             lateDeduction = earnedBeforeLate;
         }
 
-        pr.setLateDeduction(round2(lateDeduction));
+        pr.setLateDeduction(Money.toPesos(lateDeduction));
 
         // Gross pay after subtracting late deduction
-        double grossPay = earnedBeforeLate - lateDeduction;
-        if (grossPay < 0) grossPay = 0;
-        pr.setGrossPay(round2(grossPay));
+        long grossPay = Math.max(0, earnedBeforeLate - lateDeduction);
+        pr.setGrossPay(Money.toPesos(grossPay));
 
         /*
          * Government deductions are based on earned basic salary,
          * not on the full original monthly salary.
          */
-        double sss = computeSSS(earnedBasic);
-        double philHealth = computePhilHealthEmployeeShare(earnedBasic);
-        double pagIbig = computePagIbigEmployeeShare(earnedBasic);
+        long sss = table(RateTables.Kind.SSS, month, rates).amountFor(earnedBasic);
+        long philHealth = table(RateTables.Kind.PHILHEALTH, month, rates).amountFor(earnedBasic);
+        long pagIbig = table(RateTables.Kind.PAGIBIG, month, rates).amountFor(earnedBasic);
 
-        pr.setSss(round2(sss));
-        pr.setPhilHealth(round2(philHealth));
-        pr.setPagIbig(round2(pagIbig));
+        pr.setSss(Money.toPesos(sss));
+        pr.setPhilHealth(Money.toPesos(philHealth));
+        pr.setPagIbig(Money.toPesos(pagIbig));
 
-        double totalGov = sss + philHealth + pagIbig;
-        pr.setTotalDeductionsBeforeTax(round2(totalGov));
+        long totalGov = sss + philHealth + pagIbig;
+        pr.setTotalDeductionsBeforeTax(Money.toPesos(totalGov));
 
         // Taxable income is gross pay minus government deductions
-        double taxableIncome = grossPay - totalGov;
-        if (taxableIncome < 0) taxableIncome = 0;
-        pr.setTaxableIncome(round2(taxableIncome));
+        long taxableIncome = Math.max(0, grossPay - totalGov);
+        pr.setTaxableIncome(Money.toPesos(taxableIncome));
 
-        double withholdingTax = computeWithholdingTax(taxableIncome);
-        pr.setWithholdingTax(round2(withholdingTax));
+        long withholdingTax = table(RateTables.Kind.WITHHOLDING_TAX, month, rates).amountFor(taxableIncome);
+        pr.setWithholdingTax(Money.toPesos(withholdingTax));
 
         // Final net pay after all deductions
-        double netPay = grossPay - totalGov - withholdingTax;
-        if (netPay < 0) netPay = 0;
-        pr.setNetPay(round2(netPay));
+        long netPay = Math.max(0, grossPay - totalGov - withholdingTax);
+        pr.setNetPay(Money.toPesos(netPay));
 
         return pr;
     }
 
     /*
-     * This counts all weekdays from Monday to Friday
-     * in the selected month.
+     * This method computes the employee's payroll for one semi-monthly pay period.
+     * attendance holds both cutoffs of the month, from one pass over its records.
+     *
+     * The first half is paid for its own days present, prorated over the
+     * working days of the whole month. It deducts half of the contributions
+     * and tax of a month like the first half.
+     *
+     * The second half is the whole month minus what the first half paid:
+     * salary, allowances, late deduction, contributions and tax are worked
+     * out for both halves together, as in the monthly payroll, and the
+     * first-half amounts are subtracted. The two halves therefore add up
+     * to the monthly payroll. A contribution or tax of the second half can
+     * be negative when the first half deducted too much; it is given back.
+     * Its net pay is negative when the first half paid out more than the
+     * month allows; that amount is owed back. A second half without days
+     * present earns nothing and only settles the month's contributions and tax.
+     *
+     * firstHalf is the first-half record that was paid out, normally the saved one.
+     * If it is null, the first half is computed from the attendance. A first
+     * half without days present has no record and paid nothing, so then
+     * nothing is subtracted.
      */
-    private static int countWeekdaysInMonth(YearMonth ym) {
-        int count = 0;
-        for (int day = 1; day <= ym.lengthOfMonth(); day++) {
-            DayOfWeek dow = ym.atDay(day).getDayOfWeek();
-            if (dow != DayOfWeek.SATURDAY && dow != DayOfWeek.SUNDAY) {
-                count++;
-            }
+    public static PayrollRecord computePeriodPayroll(Employee emp, PayPeriod period,
+                                                     AttendanceUtil.CutoffSummary attendance,
+                                                     PayrollRecord firstHalf) {
+        YearMonth month = period.getMonth();
+        AttendanceUtil.AttendanceSummary own = attendance.of(period.getHalf());
+
+        if (!period.isFirstHalf() && firstHalf == null) {
+            firstHalf = attendance.firstHalf.daysPresent <= 0
+                    ? new PayrollRecord() // every amount zero
+                    : computePeriodPayroll(emp, PayPeriod.firstHalf(month), attendance, null);
+        }
+        boolean second = !period.isFirstHalf();
+
+        PayrollRecord pr = new PayrollRecord();
+        pr.setEmployeeNumber(emp.getEmployeeNumber());
+        pr.setEmployeeName(emp.getFullName());
+        pr.setMonth(month);
+        pr.setPeriod(period);
+        pr.setDaysPresent(own.daysPresent);
+        pr.setLateMinutes(own.totalLateMinutes);
+
+        long monthlyBasic = Money.ofPesos(emp.getBasicSalary());
+        long monthlyAllowances = Money.ofPesos(emp.getRiceSubsidy())
+                + Money.ofPesos(emp.getPhoneAllowance())
+                + Money.ofPesos(emp.getClothingAllowance());
+
+        int mask = WorkingDayCalendar.workingDayMask(month);
+        int workingDaysInMonth = Integer.bitCount(mask);
+        int workingDaysInFirst = Integer.bitCount(mask & FIRST_CUTOFF_MASK);
+        if (workingDaysInMonth <= 0) { // safety fallback, as in the monthly payroll
+            workingDaysInMonth = 22;
+            workingDaysInFirst = 11;
+        }
+
+        // Days already paid in the first half count toward the month's limit
+        int paidBefore = second ? Math.max(0, Math.min(firstHalf.getDaysPresent(), workingDaysInMonth)) : 0;
+        int paidDays = Math.max(0, Math.min(own.daysPresent, workingDaysInMonth - paidBefore));
+
+        long earnedBasic = Money.times(monthlyBasic, paidBefore + paidDays, workingDaysInMonth)
+                - (second ? Money.ofPesos(firstHalf.getMonthlyBasicSalary()) : 0);
+        long earnedAllowances = Money.times(monthlyAllowances, paidBefore + paidDays, workingDaysInMonth)
+                - (second ? Money.ofPesos(firstHalf.getTotalAllowancesMonthly()) : 0);
+
+        pr.setMonthlyBasicSalary(Money.toPesos(earnedBasic));
+        pr.setTotalAllowancesMonthly(Money.toPesos(earnedAllowances));
+
+        long hourlyRate = Money.ofPesos(emp.getHourlyRate());
+        int lateBefore = second ? firstHalf.getLateMinutes() : 0;
+        long lateDeduction = Money.times(hourlyRate, Math.max(0, lateBefore + own.totalLateMinutes), 60)
+                - (second ? Money.ofPesos(firstHalf.getLateDeduction()) : 0);
+
+        long earnedBeforeLate = earnedBasic + earnedAllowances;
+        lateDeduction = Money.clamp(lateDeduction, 0, Math.max(0, earnedBeforeLate));
+        pr.setLateDeduction(Money.toPesos(lateDeduction));
+
+        long grossPay = Math.max(0, earnedBeforeLate - lateDeduction);
+        pr.setGrossPay(Money.toPesos(grossPay));
+
+        long sss;
+        long philHealth;
+        long pagIbig;
+        if (second) {
+            long monthBasic = Money.ofPesos(firstHalf.getMonthlyBasicSalary()) + earnedBasic;
+            sss = sssShare(month, monthBasic) - Money.ofPesos(firstHalf.getSss());
+            philHealth = philHealthShare(month, monthBasic) - Money.ofPesos(firstHalf.getPhilHealth());
+            pagIbig = pagIbigShare(month, monthBasic) - Money.ofPesos(firstHalf.getPagIbig());
+        } else {
+            // A month like this half; no working days means nothing to project
+            long projectedBasic = workingDaysInFirst == 0 ? 0
+                    : Money.times(earnedBasic, workingDaysInMonth, workingDaysInFirst);
+            sss = Money.times(sssShare(month, projectedBasic), 1, 2);
+            philHealth = Money.times(philHealthShare(month, projectedBasic), 1, 2);
+            pagIbig = Money.times(pagIbigShare(month, projectedBasic), 1, 2);
+        }
+
+        pr.setSss(Money.toPesos(sss));
+        pr.setPhilHealth(Money.toPesos(philHealth));
+        pr.setPagIbig(Money.toPesos(pagIbig));
+
+        long totalGov = sss + philHealth + pagIbig;
+        pr.setTotalDeductionsBeforeTax(Money.toPesos(totalGov));
+
+        long withholdingTax;
+        long netPay;
+        if (second) {
+            // The month's taxable income is worked out as in the monthly payroll
+            long monthGross = Money.ofPesos(firstHalf.getGrossPay()) + grossPay;
+            long monthGov = Money.ofPesos(firstHalf.getTotalDeductionsBeforeTax()) + totalGov;
+            long monthTaxable = Math.max(0, monthGross - monthGov);
+
+            long taxableIncome = monthTaxable - Money.ofPesos(firstHalf.getTaxableIncome());
+            pr.setTaxableIncome(Money.toPesos(taxableIncome));
+
+            long monthTax = withholdingTax(month, monthTaxable);
+            withholdingTax = monthTax - Money.ofPesos(firstHalf.getWithholdingTax());
+
+            // What the month pays out, less the first half; negative when the first half paid too much
+            netPay = Math.max(0, monthGross - monthGov - monthTax) - Money.ofPesos(firstHalf.getNetPay());
+        } else {
+            long taxableIncome = Math.max(0, grossPay - totalGov);
+            pr.setTaxableIncome(Money.toPesos(taxableIncome));
+
+            long projectedTaxable = workingDaysInFirst == 0 ? 0
+                    : Money.times(taxableIncome, workingDaysInMonth, workingDaysInFirst);
+            withholdingTax = Money.times(withholdingTax(month, projectedTaxable), 1, 2);
+            netPay = Math.max(0, grossPay - totalGov - withholdingTax);
         }
-        return count;
+        pr.setWithholdingTax(Money.toPesos(withholdingTax));
+        pr.setNetPay(Money.toPesos(netPay));
+
+        return pr;
     }
 
     /*
      * This computes the employee share for SSS
-     * based on the salary bracket table.
+     * based on the salary bracket table in force for the payroll month.
      */
-    public static double computeSSS(double monthlyCompensation) {
-        double c = monthlyCompensation;
-
-        if (c < 3250) return 135.00;
-
-        if (c >= 3250 && c < 3750) return 157.50;
-        if (c >= 3750 && c < 4250) return 180.00;
-        if (c >= 4250 && c < 4750) return 202.50;
-        if (c >= 4750 && c < 5250) return 225.00;
-        if (c >= 5250 && c < 5750) return 247.50;
-        if (c >= 5750 && c < 6250) return 270.00;
-        if (c >= 6250 && c < 6750) return 292.50;
-        if (c >= 6750 && c < 7250) return 315.00;
-        if (c >= 7250 && c < 7750) return 337.50;
-        if (c >= 7750 && c < 8250) return 360.00;
-        if (c >= 8250 && c < 8750) return 382.50;
-        if (c >= 8750 && c < 9250) return 405.00;
-        if (c >= 9250 && c < 9750) return 427.50;
-        if (c >= 9750 && c < 10250) return 450.00;
-        if (c >= 10250 && c < 10750) return 472.50;
-        if (c >= 10750 && c < 11250) return 495.00;
-        if (c >= 11250 && c < 11750) return 517.50;
-        if (c >= 11750 && c < 12250) return 540.00;
-        if (c >= 12250 && c < 12750) return 562.50;
-        if (c >= 12750 && c < 13250) return 585.00;
-        if (c >= 13250 && c < 13750) return 607.50;
-        if (c >= 13750 && c < 14250) return 630.00;
-        if (c >= 14250 && c < 14750) return 652.50;
-        if (c >= 14750 && c < 15250) return 675.00;
-        if (c >= 15250 && c < 15750) return 697.50;
-        if (c >= 15750 && c < 16250) return 720.00;
-        if (c >= 16250 && c < 16750) return 742.50;
-        if (c >= 16750 && c < 17250) return 765.00;
-        if (c >= 17250 && c < 17750) return 787.50;
-        if (c >= 17750 && c < 18250) return 810.00;
-        if (c >= 18250 && c < 18750) return 832.50;
-        if (c >= 18750 && c < 19250) return 855.00;
-        if (c >= 19250 && c < 19750) return 877.50;
-        if (c >= 19750 && c < 20250) return 900.00;
-        if (c >= 20250 && c < 20750) return 922.50;
-        if (c >= 20750 && c < 21250) return 945.00;
-        if (c >= 21250 && c < 21750) return 967.50;
-        if (c >= 21750 && c < 22250) return 990.00;
-        if (c >= 22250 && c < 22750) return 1012.50;
-        if (c >= 22750 && c < 23250) return 1035.00;
-        if (c >= 23250 && c < 23750) return 1057.50;
-        if (c >= 23750 && c < 24250) return 1080.00;
-        if (c >= 24250 && c < 24750) return 1102.50;
-
-        return 1125.00;
-    }
-
-    /*
-     * This computes the employee share for PhilHealth.
+    public static double computeSSS(YearMonth month, double monthlyCompensation) {
+        return Money.toPesos(sssShare(month, Money.ofPesos(monthlyCompensation)));
+    }
+
+    /*
+     * This uses the table in force for the current month. The result for
+     * a past month can differ from its payslip once a newer table takes
+     * effect; pass the payroll month when it is known.
      */
-    public static double computePhilHealthEmployeeShare(double monthlyBasicSalary) {
-        double premium = monthlyBasicSalary * 0.03;
+    public static double computeSSS(double monthlyCompensation) {
+        return computeSSS(YearMonth.now(), monthlyCompensation);
+    }
 
-        if (monthlyBasicSalary <= 10000) premium = 300;
-        if (monthlyBasicSalary >= 60000) premium = 1800;
+    /*
+     * This computes the employee share for PhilHealth
+     * from the table in force for the payroll month.
+     */
+    public static double computePhilHealthEmployeeShare(YearMonth month, double monthlyBasicSalary) {
+        return Money.toPesos(philHealthShare(month, Money.ofPesos(monthlyBasicSalary)));
+    }
 
-        if (premium < 300) premium = 300;
-        if (premium > 1800) premium = 1800;
+    /*
+     * This uses the table in force for the current month, like computeSSS(double).
+     */
+    public static double computePhilHealthEmployeeShare(double monthlyBasicSalary) {
+        return computePhilHealthEmployeeShare(YearMonth.now(), monthlyBasicSalary);
+    }
 
-        return premium * 0.5;
+    /*
+     * This computes the employee share for Pag-IBIG
+     * from the table in force for the payroll month.
+     */
+    public static double computePagIbigEmployeeShare(YearMonth month, double monthlyBasicSalary) {
+        return Money.toPesos(pagIbigShare(month, Money.ofPesos(monthlyBasicSalary)));
     }
 
     /*
-     * This computes the employee share for Pag-IBIG.
+     * This uses the table in force for the current month, like computeSSS(double).
      */
     public static double computePagIbigEmployeeShare(double monthlyBasicSalary) {
-        if (monthlyBasicSalary <= 0) return 0;
-        double rate = (monthlyBasicSalary <= 1500) ? 0.01 : 0.02;
-        return monthlyBasicSalary * rate;
+        return computePagIbigEmployeeShare(YearMonth.now(), monthlyBasicSalary);
     }
 
     /*
-     * This computes the withholding tax
-     * based on the taxable monthly income.
+     * This computes the withholding tax based on the taxable monthly
+     * income, from the table in force for the payroll month.
+     */
+    public static double computeWithholdingTax(YearMonth month, double taxableMonthlyIncome) {
+        return Money.toPesos(withholdingTax(month, Money.ofPesos(taxableMonthlyIncome)));
+    }
+
+    /*
+     * This uses the table in force for the current month, like computeSSS(double).
      */
     public static double computeWithholdingTax(double taxableMonthlyIncome) {
-        double x = taxableMonthlyIncome;
+        return computeWithholdingTax(YearMonth.now(), taxableMonthlyIncome);
+    }
 
-        if (x <= 20832) return 0;
-        if (x < 33333) return (x - 20833) * 0.20;
-        if (x < 66667) return 2500 + (x - 33333) * 0.25;
-        if (x < 166667) return 10833 + (x - 66667) * 0.30;
-        if (x < 666667) return 40833.33 + (x - 166667) * 0.32;
+    private static RateTable table(RateTables.Kind kind, YearMonth ym, Map<RateTables.Kind, RateTable> rates) {
+        RateTable t = rates.get(kind);
+        return t != null ? t : RateTables.forMonth(kind, ym);
+    }
 
-        return 200833.33 + (x - 666667) * 0.35;
+    /*
+     * SSS employee share in centavos, from the table in force for the month.
+     */
+    static long sssShare(YearMonth ym, long compensation) {
+        return RateTables.forMonth(RateTables.Kind.SSS, ym).amountFor(compensation);
+    }
+
+    /*
+     * PhilHealth employee share in centavos. The table gives the employee's
+     * half directly, so no centavo is lost by halving a rounded premium.
+     */
+    static long philHealthShare(YearMonth ym, long basic) {
+        return RateTables.forMonth(RateTables.Kind.PHILHEALTH, ym).amountFor(basic);
+    }
+
+    /*
+     * Pag-IBIG employee share in centavos.
+     */
+    static long pagIbigShare(YearMonth ym, long basic) {
+        return RateTables.forMonth(RateTables.Kind.PAGIBIG, ym).amountFor(basic);
+    }
+
+    /*
+     * Annual income tax in centavos for a calendar year, from the annual
+     * taxable income in centavos. The table in force in December is used.
+     */
+    static long annualTax(int year, long taxable) {
+        return RateTables.forMonth(RateTables.Kind.ANNUAL_TAX, YearMonth.of(year, 12)).amountFor(taxable);
     }
 
     /*
-     * This rounds values into 2 decimal places
-     * for cleaner payroll output.
+     * Monthly withholding tax in centavos, from the taxable income in centavos.
      */
-    private static double round2(double v) {
-        return Math.round(v * 100.0) / 100.0;
+    static long withholdingTax(YearMonth ym, long taxable) {
+        return RateTables.forMonth(RateTables.Kind.WITHHOLDING_TAX, ym).amountFor(taxable);
     }
 }
\ No newline at end of file
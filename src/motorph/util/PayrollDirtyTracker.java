@@ -0,0 +1,45 @@
+package motorph.util;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * This class remembers which employee-months had their attendance changed
+ * since a monthly payroll run, so only those employees have to be computed
+ * again instead of the whole month.
+ *
+ * AttendanceService marks an employee-month after every add, update, or
+ * delete; the payroll screen takes the marks for the month it is showing.
+ */
+public class PayrollDirtyTracker {
+
+    private static final Map<YearMonth, Set<String>> dirty = new HashMap<>();
+
+    /*
+     * This marks the employee's payroll for the month as out of date.
+     */
+    public static synchronized void markDirty(String employeeNo, YearMonth ym) {
+        if (employeeNo == null || ym == null) return;
+        dirty.computeIfAbsent(ym, k -> new HashSet<>()).add(employeeNo.trim());
+    }
+
+    /*
+     * This returns the employees marked for the month and removes the marks.
+     */
+    public static synchronized Set<String> takeDirty(YearMonth ym) {
+        Set<String> out = dirty.remove(ym);
+        return out == null ? Collections.emptySet() : out;
+    }
+
+    /*
+     * This removes the marks of the month, for example when the whole month
+     * is about to be computed again.
+     */
+    public static synchronized void clear(YearMonth ym) {
+        dirty.remove(ym);
+    }
+}
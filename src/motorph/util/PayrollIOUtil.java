@@ -3,57 +3,277 @@ package motorph.util;
 import motorph.model.PayrollRecord;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class PayrollIOUtil {
 
     private static final String PATH = "data/payroll_records.csv";
 
+    // Column order used when a new payroll file is created
+    private static final String HEADER = "Employee #,Employee Name,Month,Days Present,Late Minutes,Late Deduction,Basic Earned,Allowances Earned,Gross Pay,SSS,PhilHealth,Pag-IBIG,Total Gov,Taxable Income,Withholding Tax,Net Pay";
+
+    // Payroll fields in the order of HEADER, with older column names after the first
+    private static final String[][] FIELDS = {
+            {"Employee #"},
+            {"Employee Name"},
+            {"Month"},
+            {"Days Present"},
+            {"Late Minutes"},
+            {"Late Deduction"},
+            {"Basic Earned", "Monthly Basic Salary"},
+            {"Allowances Earned", "Allowances"},
+            {"Gross Pay"},
+            {"SSS"},
+            {"PhilHealth"},
+            {"Pag-IBIG"},
+            {"Total Gov", "Total Gov Deductions"},
+            {"Taxable Income"},
+            {"Withholding Tax"},
+            {"Net Pay"}
+    };
+
+    // The header of the payroll file as last read, replaced as a whole so readers need no lock
+    private static volatile HeaderStamp header;
+
+    // Positions of fields in FIELDS, for readers that work on the columns directly
+    static final int EMP_NO = 0;
+    static final int EMP_NAME = 1;
+    static final int MONTH = 2;
+    static final int LATE_DEDUCTION = 5;
+    static final int BASIC_EARNED = 6;
+    static final int GROSS_PAY = 8;
+    static final int TOTAL_GOV = 12;
+    static final int TAXABLE_INCOME = 13;
+    static final int WITHHOLDING_TAX = 14;
+
     /*
      * This method adds one payroll record
-     * to the payroll CSV file.
+     * to the payroll CSV file and to the offset index.
+     * The values are written in the column order of the file's own header.
      */
-    public static void appendPayrollRecord(PayrollRecord pr) {
+    public static synchronized void appendPayrollRecord(PayrollRecord pr) {
         ensureFile();
 
-        try (PrintWriter pw = new PrintWriter(new FileWriter(PATH, true))) {
-            pw.println(toCsv(pr));
+        File f = dataFile();
+        Columns cols = columns();
+        long offset = f.length();
+        try (PrintWriter pw = new PrintWriter(new FileWriter(f, true))) {
+            pw.println(toCsv(pr, cols));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+
+        PayrollRecordIndex.recordAppended(pr.getEmployeeNumber(), pr.getMonth().toString(), offset, f.length());
+    }
+
+    /*
+     * This saves a whole payroll run in one batch. A record replaces any
+     * row with the same employee number and month, so running and saving
+     * a month again does not add duplicates.
+     *
+     * If none of the records are in the file yet, they are appended in one
+     * write. Otherwise the file is copied to a temp file without the old rows,
+     * the new rows are added, and the temp file replaces the payroll file.
+     * Either way the data is forced to disk once before the method returns.
+     */
+    public static synchronized void savePayrollRecords(List<PayrollRecord> records) {
+        if (records.isEmpty()) return;
+        ensureFile();
+
+        // The last record of a key wins, in the order the keys first appear
+        Map<String, PayrollRecord> byKey = new LinkedHashMap<>();
+        for (PayrollRecord pr : records) {
+            byKey.put(pr.getEmployeeNumber() + "," + pr.getMonth(), pr);
+        }
+        byte[] newRows = toRows(byKey.values());
+
+        File f = dataFile();
+        try {
+            List<long[]> replaced = PayrollRecordIndex.rangesFor(byKey.keySet());
+            if (replaced.isEmpty()) {
+                appendRows(f, newRows);
+                // The index picks up the new rows on its next lookup
+            } else {
+                rewriteWithout(f, replaced, newRows);
+                PayrollRecordIndex.rebuild();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * This removes the rows of the given employees for one month, with one
+     * rewrite of the file. A run that saves a month in several batches calls
+     * this once before the first batch and then only appends, instead of
+     * rewriting the whole payroll history for every batch.
+     */
+    public static synchronized void removePayrollRecords(Collection<String> employeeNumbers, YearMonth ym) {
+        if (employeeNumbers.isEmpty()) return;
+        ensureFile();
+
+        Set<String> keys = new HashSet<>();
+        for (String empNo : employeeNumbers) {
+            keys.add(empNo + "," + ym);
+        }
+
+        File f = dataFile();
+        try {
+            List<long[]> removed = PayrollRecordIndex.rangesFor(keys);
+            if (removed.isEmpty()) return;
+
+            rewriteWithout(f, removed, new byte[0]);
+            PayrollRecordIndex.rebuild();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * This adds records to the end of the payroll file in one write,
+     * without looking for older rows of the same key. It is meant for
+     * rows that removePayrollRecords already cleared.
+     */
+    public static synchronized void appendPayrollRecords(List<PayrollRecord> records) {
+        if (records.isEmpty()) return;
+        ensureFile();
+
+        try {
+            appendRows(dataFile(), toRows(records));
+            // The index picks up the new rows on its next lookup
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] toRows(Collection<PayrollRecord> records) {
+        Columns cols = columns();
+        StringBuilder sb = new StringBuilder();
+        for (PayrollRecord pr : records) {
+            sb.append(toCsv(pr, cols)).append(System.lineSeparator());
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendRows(File f, byte[] rows) throws IOException {
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ch.position(ch.size());
+            if (!endsWithLineBreak(ch)) writeFully(ch, System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            writeFully(ch, rows);
+            ch.force(true);
+        }
+    }
+
+    private static void rewriteWithout(File f, List<long[]> skip, byte[] rows) throws IOException {
+        File temp = new File(f.getPath() + ".tmp");
+
+        try (FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long pos = 0;
+            for (long[] range : skip) {
+                copy(in, pos, range[0], out);
+                pos = range[1];
+            }
+            copy(in, pos, in.size(), out);
+
+            if (!endsWithLineBreak(out)) writeFully(out, System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            writeFully(out, rows);
+            out.force(true);
+        }
+
+        try {
+            Files.move(temp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void copy(FileChannel in, long from, long to, FileChannel out) throws IOException {
+        while (from < to) {
+            from += in.transferTo(from, to - from, out);
+        }
+    }
+
+    private static void writeFully(FileChannel ch, byte[] bytes) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(bytes);
+        while (b.hasRemaining()) {
+            ch.write(b);
+        }
+    }
+
+    private static boolean endsWithLineBreak(FileChannel ch) throws IOException {
+        long size = ch.position();
+        if (size == 0) return true;
+
+        ByteBuffer last = ByteBuffer.allocate(1);
+        ch.read(last, size - 1);
+        return last.get(0) == '\n';
     }
 
     /*
      * This loads payroll records of one employee
-     * for the selected month.
+     * for the selected month. The index gives the row offsets,
+     * so only the matching rows are read from the file.
      */
     public static List<PayrollRecord> loadPayrollRecordsForEmployeeMonth(String empNo, YearMonth ym) {
         ensureFile();
 
         List<PayrollRecord> out = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(PATH))) {
-            String line;
-            boolean first = true;
-            while ((line = br.readLine()) != null) {
-                if (first) { first = false; continue; }
-                if (line.trim().isEmpty()) continue;
+        try {
+            Columns cols = columns();
+            CsvCodec.Reader r = CsvCodec.Reader.forLines();
+            for (long offset : PayrollRecordIndex.offsetsFor(empNo, ym)) {
+                PayrollRecord pr = readAt(offset, cols, r);
+                if (pr != null) out.add(pr);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return out;
+    }
+
+    /*
+     * This loads the saved payroll of one month in a single pass over the
+     * file. When an employee was saved more than once for the month,
+     * the latest row is returned. Records are in the order they were first saved.
+     */
+    public static List<PayrollRecord> loadPayrollRecordsForMonth(YearMonth ym) {
+        ensureFile();
 
-                String[] p = line.split(",", -1);
+        Map<String, PayrollRecord> latest = new LinkedHashMap<>();
+        String month = ym.toString();
+        Columns cols = columns();
 
-                String eNo = get(p, 0);
-                String monthText = get(p, 2); // yyyy-MM
+        try (CsvCodec.Reader r = new CsvCodec.Reader(new BufferedReader(new FileReader(PATH)))) {
+            r.next(); // header
 
-                if (!eNo.equals(empNo)) continue;
-                if (!monthText.equals(ym.toString())) continue;
+            while (r.next()) {
+                int[] c = cols.forRow(r).pos;
+                if (!month.equals(r.get(c[MONTH])) || r.get(c[EMP_NO]).isEmpty()) continue;
 
-                out.add(fromCsv(p));
+                PayrollRecord pr = fromCsv(r, cols);
+                latest.put(pr.getEmployeeNumber(), pr);
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return out;
+        return new ArrayList<>(latest.values());
     }
 
     /*
@@ -63,36 +283,71 @@ public class PayrollIOUtil {
     public static PayrollRecord findLatestForEmployee(String empNo) {
         ensureFile();
 
-        PayrollRecord latest = null;
+        try {
+            long offset = PayrollRecordIndex.latestFor(empNo);
+            if (offset < 0) return null;
+            return readAt(offset, columns(), CsvCodec.Reader.forLines());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(PATH))) {
-            String line;
-            boolean first = true;
+    /*
+     * This returns the employee number and month of one CSV row,
+     * or null if the row has no valid month. r is a reader from
+     * CsvCodec.Reader.forLines, reused for every row of a scan.
+     */
+    static String[] keyOf(CsvCodec.Reader r, String line, Columns cols) throws IOException {
+        if (!r.parse(line)) return null;
+        cols = cols.forRow(r);
 
-            while ((line = br.readLine()) != null) {
-                if (first) { first = false; continue; }
-                if (line.trim().isEmpty()) continue;
+        String eNo = r.get(cols.pos[EMP_NO]);
+        String monthText = r.get(cols.pos[MONTH]); // yyyy-MM
+        if (eNo.isEmpty()) return null;
 
-                String[] p = line.split(",", -1);
-                String eNo = get(p, 0);
-                if (!eNo.equals(empNo)) continue;
+        try {
+            YearMonth.parse(monthText);
+        } catch (Exception e) {
+            return null;
+        }
+        return new String[]{eNo, monthText};
+    }
 
-                PayrollRecord pr = fromCsv(p);
+    /*
+     * This reads the header of the payroll file and matches it to the payroll fields.
+     * The result is kept until the file's size or modification time changes.
+     */
+    static Columns columns() {
+        ensureFile();
 
-                if (latest == null) {
-                    latest = pr;
-                } else {
-                    if (pr.getMonth() != null && latest.getMonth() != null
-                            && pr.getMonth().isAfter(latest.getMonth())) {
-                        latest = pr;
-                    }
-                }
-            }
-        } catch (Exception e) {
+        File f = dataFile();
+        long modified = f.lastModified();
+        long size = f.length();
+
+        HeaderStamp h = header;
+        if (h != null && h.modified == modified && h.size == size) return h.cols;
+
+        Columns cols = Columns.DEFAULT;
+        try (CsvCodec.Reader r = new CsvCodec.Reader(new BufferedReader(new FileReader(f)))) {
+            if (r.next()) cols = new Columns(new CsvCodec.Header(r));
+        } catch (IOException e) {
             e.printStackTrace();
+            return cols;
         }
 
-        return latest;
+        header = new HeaderStamp(cols, modified, size);
+        return cols;
+    }
+
+    static File dataFile() {
+        return new File(PATH);
+    }
+
+    private static PayrollRecord readAt(long offset, Columns cols, CsvCodec.Reader r) throws IOException {
+        String line = PayrollRecordIndex.readLineAt(offset);
+        if (line == null || !r.parse(line)) return null;
+        return fromCsv(r, cols);
     }
 
     /*
@@ -134,8 +389,8 @@ public class PayrollIOUtil {
     }
 
     // This converts a PayrollRecord object into one CSV row.
-    private static String toCsv(PayrollRecord pr) {
-        return csv(
+    private static String toCsv(PayrollRecord pr, Columns cols) {
+        String[] values = {
                 pr.getEmployeeNumber(),
                 pr.getEmployeeName(),
                 pr.getMonth().toString(),
@@ -152,35 +407,66 @@ public class PayrollIOUtil {
                 String.valueOf(pr.getTaxableIncome()),
                 String.valueOf(pr.getWithholdingTax()),
                 String.valueOf(pr.getNetPay())
-        );
+        };
+
+        String[] row = new String[cols.fieldAt.length];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = cols.fieldAt[i] < 0 ? "" : values[cols.fieldAt[i]];
+        }
+        return CsvCodec.row(row);
     }
 
     // This converts CSV data back into a PayrollRecord object.
-    private static PayrollRecord fromCsv(String[] p) {
+    private static PayrollRecord fromCsv(CsvCodec.Reader r, Columns cols) {
+        int[] c = cols.forRow(r).pos;
+
         PayrollRecord pr = new PayrollRecord();
-        pr.setEmployeeNumber(get(p, 0));
-        pr.setEmployeeName(get(p, 1));
-        pr.setMonth(YearMonth.parse(get(p, 2)));
-
-        pr.setDaysPresent(parseInt(get(p, 3)));
-        pr.setLateMinutes(parseInt(get(p, 4)));
-
-        pr.setLateDeduction(parseD(get(p, 5)));
-        pr.setMonthlyBasicSalary(parseD(get(p, 6)));
-        pr.setTotalAllowancesMonthly(parseD(get(p, 7)));
-        pr.setGrossPay(parseD(get(p, 8)));
-
-        pr.setSss(parseD(get(p, 9)));
-        pr.setPhilHealth(parseD(get(p, 10)));
-        pr.setPagIbig(parseD(get(p, 11)));
-        pr.setTotalDeductionsBeforeTax(parseD(get(p, 12)));
-        pr.setTaxableIncome(parseD(get(p, 13)));
-        pr.setWithholdingTax(parseD(get(p, 14)));
-        pr.setNetPay(parseD(get(p, 15)));
+        pr.setEmployeeNumber(r.get(c[0]));
+        pr.setEmployeeName(r.get(c[1]));
+        pr.setMonth(YearMonth.parse(r.get(c[2])));
+
+        pr.setDaysPresent(r.getInt(c[3], 0));
+        pr.setLateMinutes(r.getInt(c[4], 0));
+
+        pr.setLateDeduction(r.getDouble(c[5], 0));
+        pr.setMonthlyBasicSalary(r.getDouble(c[6], 0));
+        pr.setTotalAllowancesMonthly(r.getDouble(c[7], 0));
+        pr.setGrossPay(r.getDouble(c[8], 0));
+
+        pr.setSss(r.getDouble(c[9], 0));
+        pr.setPhilHealth(r.getDouble(c[10], 0));
+        pr.setPagIbig(r.getDouble(c[11], 0));
+        pr.setTotalDeductionsBeforeTax(r.getDouble(c[12], 0));
+        pr.setTaxableIncome(r.getDouble(c[13], 0));
+        pr.setWithholdingTax(r.getDouble(c[14], 0));
+        pr.setNetPay(r.getDouble(c[15], 0));
 
         return pr;
     }
 
+    // Copies every field, so cached records cannot be changed by callers
+    static PayrollRecord copyOf(PayrollRecord r) {
+        PayrollRecord c = new PayrollRecord();
+        c.setEmployeeNumber(r.getEmployeeNumber());
+        c.setEmployeeName(r.getEmployeeName());
+        c.setMonth(r.getMonth());
+        c.setPeriod(r.getPeriod());
+        c.setMonthlyBasicSalary(r.getMonthlyBasicSalary());
+        c.setTotalAllowancesMonthly(r.getTotalAllowancesMonthly());
+        c.setDaysPresent(r.getDaysPresent());
+        c.setLateMinutes(r.getLateMinutes());
+        c.setLateDeduction(r.getLateDeduction());
+        c.setGrossPay(r.getGrossPay());
+        c.setSss(r.getSss());
+        c.setPhilHealth(r.getPhilHealth());
+        c.setPagIbig(r.getPagIbig());
+        c.setTotalDeductionsBeforeTax(r.getTotalDeductionsBeforeTax());
+        c.setTaxableIncome(r.getTaxableIncome());
+        c.setWithholdingTax(r.getWithholdingTax());
+        c.setNetPay(r.getNetPay());
+        return c;
+    }
+
     /*
      * This makes sure the payroll CSV file exists.
      * If not, it creates the file with the correct header.
@@ -192,39 +478,75 @@ public class PayrollIOUtil {
         File f = new File(PATH);
         if (!f.exists()) {
             try (PrintWriter pw = new PrintWriter(new FileWriter(f))) {
-                pw.println("Employee #,Employee Name,Month,Days Present,Late Minutes,Late Deduction,Basic Earned,Allowances Earned,Gross Pay,SSS,PhilHealth,Pag-IBIG,Total Gov,Taxable Income,Withholding Tax,Net Pay");
+                pw.println(HEADER);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         }
     }
 
-    private static String get(String[] p, int idx) {
-        if (idx >= p.length) return "";
-        return p[idx] == null ? "" : p[idx].trim();
+    private static String money(double v) {
+        return String.format("%,.2f", v);
     }
 
-    private static int parseInt(String s) {
-        try { return Integer.parseInt(s.trim()); } catch (Exception e) { return 0; }
-    }
+    private static class HeaderStamp {
+        final Columns cols;
+        final long modified;
+        final long size;
 
-    private static double parseD(String s) {
-        try { return Double.parseDouble(s.trim()); } catch (Exception e) { return 0; }
+        HeaderStamp(Columns cols, long modified, long size) {
+            this.cols = cols;
+            this.modified = modified;
+            this.size = size;
+        }
     }
 
-    // This makes text safer before writing it into CSV.
-    private static String csv(String... vals) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < vals.length; i++) {
-            String v = vals[i] == null ? "" : vals[i];
-            v = v.replace(",", " ").replace("\n", " ").replace("\r", " ");
-            if (i > 0) sb.append(",");
-            sb.append(v);
+    /*
+     * This maps payroll fields to file columns and back.
+     * pos[field] is the file column of a field, or -1 if the file does not have it.
+     * fieldAt[column] is the field stored in a file column, or -1 for unknown columns.
+     */
+    static class Columns {
+        static final Columns DEFAULT = defaultColumns();
+
+        final int[] pos = new int[FIELDS.length];
+        final int[] fieldAt;
+
+        Columns(CsvCodec.Header h) {
+            fieldAt = new int[h.size()];
+            Arrays.fill(fieldAt, -1);
+
+            for (int f = 0; f < FIELDS.length; f++) {
+                pos[f] = h.indexOf(FIELDS[f]);
+                if (pos[f] >= 0) fieldAt[pos[f]] = f;
+            }
         }
-        return sb.toString();
-    }
 
-    private static String money(double v) {
-        return String.format("%,.2f", v);
+        /*
+         * Older versions of the program appended rows in HEADER order
+         * even when the file header had another order. Such a row is
+         * recognised by its month not being where the header says it is.
+         */
+        Columns forRow(CsvCodec.Reader r) {
+            if (this == DEFAULT || isMonth(r.get(pos[MONTH]))) return this;
+            return isMonth(r.get(DEFAULT.pos[MONTH])) ? DEFAULT : this;
+        }
+
+        private static boolean isMonth(String s) {
+            try {
+                YearMonth.parse(s);
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        private static Columns defaultColumns() {
+            try {
+                return new Columns(new CsvCodec.Header(CsvCodec.Reader.ofLine(HEADER)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 }
\ No newline at end of file
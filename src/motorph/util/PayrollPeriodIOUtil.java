@@ -0,0 +1,198 @@
+package motorph.util;
+
+import motorph.model.PayPeriod;
+import motorph.model.PayrollRecord;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * This class stores semi-monthly payroll records in data/payroll_periods.csv,
+ * apart from the monthly records in payroll_records.csv.
+ *
+ * Saving only appends rows. When a period is run and saved again, the
+ * newer row of an employee and period replaces the older one on reading,
+ * so nothing already written has to be rewritten.
+ *
+ * The file is read once and kept in memory by period, so the second-half
+ * run finds each employee's first-half record without scanning the file;
+ * it is read again only when it was changed outside the program.
+ */
+public class PayrollPeriodIOUtil {
+
+    private static final String PATH = "data/payroll_periods.csv";
+
+    private static final String HEADER = "Period,Employee #,Employee Name,Days Present,Late Minutes,Late Deduction,Basic Earned,Allowances Earned,Gross Pay,SSS,PhilHealth,Pag-IBIG,Total Gov,Taxable Income,Withholding Tax,Net Pay";
+
+    private static Map<PayPeriod, Map<String, PayrollRecord>> byPeriod;
+    private static long loadedModified = -1;
+    private static long loadedSize = -1;
+
+    /*
+     * This appends the period records in one write.
+     */
+    public static synchronized void savePeriodRecords(List<PayrollRecord> records) {
+        if (records.isEmpty()) return;
+        ensureLoaded();
+
+        StringBuilder sb = new StringBuilder();
+        for (PayrollRecord pr : records) {
+            if (pr.getPeriod() == null) throw new IllegalArgumentException("Record of " + pr.getEmployeeNumber() + " has no pay period.");
+            sb.append(toCsv(pr)).append(System.lineSeparator());
+        }
+
+        File f = new File(PATH);
+        try (OutputStream out = new FileOutputStream(f, true)) {
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        for (PayrollRecord pr : records) {
+            remember(PayrollIOUtil.copyOf(pr));
+        }
+        loadedModified = f.lastModified();
+        loadedSize = f.length();
+    }
+
+    /*
+     * This returns the saved record of an employee for a period, or null.
+     */
+    public static synchronized PayrollRecord findPeriodRecord(String empNo, PayPeriod period) {
+        ensureLoaded();
+
+        Map<String, PayrollRecord> m = byPeriod.get(period);
+        PayrollRecord pr = m == null ? null : m.get(empNo);
+        return pr == null ? null : PayrollIOUtil.copyOf(pr);
+    }
+
+    /*
+     * This returns every saved record of a period, keyed by employee number.
+     */
+    public static synchronized Map<String, PayrollRecord> loadPeriodRecords(PayPeriod period) {
+        ensureLoaded();
+
+        Map<String, PayrollRecord> m = byPeriod.get(period);
+        if (m == null) return Collections.emptyMap();
+
+        Map<String, PayrollRecord> out = new LinkedHashMap<>();
+        for (Map.Entry<String, PayrollRecord> e : m.entrySet()) {
+            out.put(e.getKey(), PayrollIOUtil.copyOf(e.getValue()));
+        }
+        return out;
+    }
+
+    private static void ensureLoaded() {
+        ensureFile();
+
+        File f = new File(PATH);
+        if (byPeriod != null && f.lastModified() == loadedModified && f.length() == loadedSize) return;
+
+        byPeriod = new HashMap<>();
+        try (CsvCodec.Reader r = new CsvCodec.Reader(new BufferedReader(new FileReader(f)))) {
+            if (r.next()) {
+                int[] c = columnsOf(new CsvCodec.Header(r));
+                while (r.next()) {
+                    if (r.get(c[0]).isEmpty()) continue;
+                    try {
+                        remember(fromCsv(r, c));
+                    } catch (RuntimeException e) {
+                        // A damaged row is left out
+                        e.printStackTrace();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        loadedModified = f.lastModified();
+        loadedSize = f.length();
+    }
+
+    private static void remember(PayrollRecord pr) {
+        byPeriod.computeIfAbsent(pr.getPeriod(), k -> new LinkedHashMap<>()).put(pr.getEmployeeNumber(), pr);
+    }
+
+    private static int[] columnsOf(CsvCodec.Header h) throws IOException {
+        String[] names = HEADER.split(",");
+        int[] c = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            c[i] = h.indexOf(names[i]);
+            if (c[i] < 0) throw new IOException(PATH + " has no " + names[i] + " column.");
+        }
+        return c;
+    }
+
+    private static String toCsv(PayrollRecord pr) {
+        return CsvCodec.row(new String[]{
+                pr.getPeriod().toString(),
+                pr.getEmployeeNumber(),
+                pr.getEmployeeName(),
+                String.valueOf(pr.getDaysPresent()),
+                String.valueOf(pr.getLateMinutes()),
+                String.valueOf(pr.getLateDeduction()),
+                String.valueOf(pr.getMonthlyBasicSalary()),
+                String.valueOf(pr.getTotalAllowancesMonthly()),
+                String.valueOf(pr.getGrossPay()),
+                String.valueOf(pr.getSss()),
+                String.valueOf(pr.getPhilHealth()),
+                String.valueOf(pr.getPagIbig()),
+                String.valueOf(pr.getTotalDeductionsBeforeTax()),
+                String.valueOf(pr.getTaxableIncome()),
+                String.valueOf(pr.getWithholdingTax()),
+                String.valueOf(pr.getNetPay())
+        });
+    }
+
+    private static PayrollRecord fromCsv(CsvCodec.Reader r, int[] c) {
+        PayPeriod period = PayPeriod.parse(r.get(c[0]));
+
+        PayrollRecord pr = new PayrollRecord();
+        pr.setPeriod(period);
+        pr.setMonth(period.getMonth());
+        pr.setEmployeeNumber(r.get(c[1]));
+        pr.setEmployeeName(r.get(c[2]));
+
+        pr.setDaysPresent(r.getInt(c[3], 0));
+        pr.setLateMinutes(r.getInt(c[4], 0));
+
+        pr.setLateDeduction(r.getDouble(c[5], 0));
+        pr.setMonthlyBasicSalary(r.getDouble(c[6], 0));
+        pr.setTotalAllowancesMonthly(r.getDouble(c[7], 0));
+        pr.setGrossPay(r.getDouble(c[8], 0));
+
+        pr.setSss(r.getDouble(c[9], 0));
+        pr.setPhilHealth(r.getDouble(c[10], 0));
+        pr.setPagIbig(r.getDouble(c[11], 0));
+        pr.setTotalDeductionsBeforeTax(r.getDouble(c[12], 0));
+        pr.setTaxableIncome(r.getDouble(c[13], 0));
+        pr.setWithholdingTax(r.getDouble(c[14], 0));
+        pr.setNetPay(r.getDouble(c[15], 0));
+
+        return pr;
+    }
+
+    /*
+     * This makes sure the period file exists.
+     * If not, it creates the file with the correct header.
+     */
+    private static void ensureFile() {
+        File dir = new File("data");
+        if (!dir.exists()) dir.mkdirs();
+
+        File f = new File(PATH);
+        if (!f.exists()) {
+            try (PrintWriter pw = new PrintWriter(new FileWriter(f))) {
+                pw.println(HEADER);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package motorph.util;
+
+import motorph.model.PayrollRecord;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * This class holds the result of a payroll run over several months:
+ * the monthly records of every month in the range, and one set of totals
+ * per employee over the whole range (year to date when the range starts
+ * in January). Totals are added up in centavos, so they match the sum
+ * of the amounts on the monthly records exactly.
+ */
+public class PayrollRangeResult {
+
+    private final YearMonth from;
+    private final YearMonth to;
+    private final Map<YearMonth, List<PayrollRecord>> monthly = new LinkedHashMap<>();
+    private final Map<String, EmployeeTotals> totals = new LinkedHashMap<>();
+
+    public PayrollRangeResult(YearMonth from, YearMonth to) {
+        this.from = from;
+        this.to = to;
+        for (YearMonth ym = from; !ym.isAfter(to); ym = ym.plusMonths(1)) {
+            monthly.put(ym, new ArrayList<>());
+        }
+    }
+
+    /*
+     * This adds one monthly record to its month and to the employee's totals.
+     * Records must be added in month order; a null record is ignored.
+     */
+    public void add(PayrollRecord pr) {
+        if (pr == null) return;
+
+        List<PayrollRecord> month = monthly.get(pr.getMonth());
+        if (month == null) throw new IllegalArgumentException(pr.getMonth() + " is outside " + from + " to " + to + ".");
+
+        month.add(pr);
+        totals.computeIfAbsent(pr.getEmployeeNumber(), EmployeeTotals::new).add(pr);
+    }
+
+    public YearMonth getFrom() { return from; }
+    public YearMonth getTo() { return to; }
+
+    /*
+     * This returns the records of one month, in employee list order.
+     */
+    public List<PayrollRecord> getMonthlyRecords(YearMonth ym) {
+        List<PayrollRecord> month = monthly.get(ym);
+        return month == null ? Collections.emptyList() : Collections.unmodifiableList(month);
+    }
+
+    /*
+     * This returns every record of the range, month by month.
+     */
+    public List<PayrollRecord> getAllRecords() {
+        List<PayrollRecord> out = new ArrayList<>();
+        for (List<PayrollRecord> month : monthly.values()) {
+            out.addAll(month);
+        }
+        return out;
+    }
+
+    /*
+     * This returns the totals of every employee with at least one record,
+     * keyed by employee number.
+     */
+    public Map<String, EmployeeTotals> getTotals() {
+        return Collections.unmodifiableMap(totals);
+    }
+
+    /*
+     * This holds one employee's totals over the range.
+     */
+    public static class EmployeeTotals {
+        private final String employeeNumber;
+        private String employeeName;
+        private int months;
+        private int daysPresent;
+        private int lateMinutes;
+
+        private long basic;
+        private long allowances;
+        private long lateDeduction;
+        private long grossPay;
+        private long sss;
+        private long philHealth;
+        private long pagIbig;
+        private long totalGov;
+        private long taxableIncome;
+        private long withholdingTax;
+        private long netPay;
+
+        EmployeeTotals(String employeeNumber) {
+            this.employeeNumber = employeeNumber;
+        }
+
+        void add(PayrollRecord pr) {
+            employeeName = pr.getEmployeeName(); // the latest month's name
+            months++;
+            daysPresent += pr.getDaysPresent();
+            lateMinutes += pr.getLateMinutes();
+
+            basic += Money.ofPesos(pr.getMonthlyBasicSalary());
+            allowances += Money.ofPesos(pr.getTotalAllowancesMonthly());
+            lateDeduction += Money.ofPesos(pr.getLateDeduction());
+            grossPay += Money.ofPesos(pr.getGrossPay());
+            sss += Money.ofPesos(pr.getSss());
+            philHealth += Money.ofPesos(pr.getPhilHealth());
+            pagIbig += Money.ofPesos(pr.getPagIbig());
+            totalGov += Money.ofPesos(pr.getTotalDeductionsBeforeTax());
+            taxableIncome += Money.ofPesos(pr.getTaxableIncome());
+            withholdingTax += Money.ofPesos(pr.getWithholdingTax());
+            netPay += Money.ofPesos(pr.getNetPay());
+        }
+
+        public String getEmployeeNumber() { return employeeNumber; }
+        public String getEmployeeName() { return employeeName; }
+        public int getMonths() { return months; }
+        public int getDaysPresent() { return daysPresent; }
+        public int getLateMinutes() { return lateMinutes; }
+
+        public double getBasicEarned() { return Money.toPesos(basic); }
+        public double getAllowancesEarned() { return Money.toPesos(allowances); }
+        public double getLateDeduction() { return Money.toPesos(lateDeduction); }
+        public double getGrossPay() { return Money.toPesos(grossPay); }
+        public double getSss() { return Money.toPesos(sss); }
+        public double getPhilHealth() { return Money.toPesos(philHealth); }
+        public double getPagIbig() { return Money.toPesos(pagIbig); }
+        public double getTotalDeductionsBeforeTax() { return Money.toPesos(totalGov); }
+        public double getTaxableIncome() { return Money.toPesos(taxableIncome); }
+        public double getWithholdingTax() { return Money.toPesos(withholdingTax); }
+        public double getNetPay() { return Money.toPesos(netPay); }
+    }
+}
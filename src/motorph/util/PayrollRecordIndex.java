@@ -0,0 +1,382 @@
+package motorph.util;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * This class keeps a sidecar index for payroll_records.csv.
+ * It maps (employee number, month) to the byte offsets of the matching rows,
+ * and keeps a pointer to each employee's latest month. Payslip lookups can
+ * then seek straight to the row instead of reading the whole payroll file.
+ *
+ * Sidecar format (data/payroll_records.idx):
+ *   #payroll-index-v2,<byte offset of first data row>
+ *   <employee #>,<yyyy-MM>,<row offset>,<offset after the row>
+ *
+ * The index is extended when rows are appended and rebuilt from the
+ * payroll file when the sidecar is missing or no longer matches it.
+ */
+public class PayrollRecordIndex {
+
+    private static final String INDEX_PATH = "data/payroll_records.idx";
+    private static final String HEADER_PREFIX = "#payroll-index-v2,";
+
+    private static Map<String, Map<String, List<Long>>> offsets;
+    private static List<IndexedRow> rows;
+    private static Map<String, Long> latestOffset;
+    private static Map<String, YearMonth> latestMonth;
+
+    // Everything before this byte of the payroll file is indexed
+    private static long indexedBytes = -1;
+    private static long dataStart = -1;
+
+    // Last indexed row, used to check that the payroll file was not rewritten
+    private static String lastKey;
+    private static long lastOffset = -1;
+    private static long lastEnd = -1;
+
+    private static long knownModified = -1;
+
+    /*
+     * This returns the offsets of all rows of one employee for one month,
+     * in file order.
+     */
+    public static synchronized List<Long> offsetsFor(String empNo, YearMonth ym) {
+        ensureCurrent();
+
+        Map<String, List<Long>> byMonth = offsets.get(empNo);
+        if (byMonth == null) return Collections.emptyList();
+
+        List<Long> list = byMonth.get(ym.toString());
+        return list == null ? Collections.emptyList() : new ArrayList<>(list);
+    }
+
+    /*
+     * This returns the offset of the employee's latest payroll row,
+     * or -1 if the employee has no payroll records.
+     */
+    public static synchronized long latestFor(String empNo) {
+        ensureCurrent();
+
+        Long off = latestOffset.get(empNo);
+        return off == null ? -1 : off;
+    }
+
+    /*
+     * This is called right after one row was appended to the payroll file.
+     */
+    public static synchronized void recordAppended(String empNo, String month, long offset, long end) {
+        if (offsets == null || offset != indexedBytes) {
+            // Something else changed the file, so let the next lookup sort it out
+            return;
+        }
+
+        add(empNo, month, offset, end);
+        indexedBytes = end;
+        knownModified = PayrollIOUtil.dataFile().lastModified();
+        appendToSidecar(empNo, month, offset, end);
+    }
+
+    /*
+     * This returns the byte ranges {offset, end} of every row whose
+     * "employee #,yyyy-MM" key is in keys, in file order.
+     */
+    static synchronized List<long[]> rangesFor(Set<String> keys) {
+        ensureCurrent();
+
+        List<long[]> out = new ArrayList<>();
+        for (IndexedRow r : rows) {
+            if (keys.contains(r.empNo + "," + r.month)) out.add(new long[]{r.offset, r.end});
+        }
+        return out;
+    }
+
+    /*
+     * This reads the whole payroll file again and rewrites the sidecar.
+     */
+    public static synchronized void rebuild() {
+        clear();
+
+        File data = PayrollIOUtil.dataFile();
+        try (RowReader reader = new RowReader(data, 0)) {
+            String header = reader.next();
+            dataStart = header == null ? 0 : reader.position();
+            indexedBytes = dataStart;
+            indexFrom(reader);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        knownModified = data.lastModified();
+        writeSidecar();
+    }
+
+    /*
+     * This reads one payroll row at a byte offset.
+     */
+    public static String readLineAt(long offset) throws IOException {
+        try (RowReader reader = new RowReader(PayrollIOUtil.dataFile(), offset)) {
+            return reader.next();
+        }
+    }
+
+    private static void ensureCurrent() {
+        File data = PayrollIOUtil.dataFile();
+
+        if (offsets == null && !loadSidecar()) {
+            rebuild();
+            return;
+        }
+
+        long len = data.length();
+        long modified = data.lastModified();
+        if (len == indexedBytes && modified == knownModified) return;
+
+        if (len < indexedBytes || !lastRowStillMatches()) {
+            rebuild();
+            return;
+        }
+
+        if (len > indexedBytes) {
+            extend();
+        }
+        knownModified = modified;
+    }
+
+    /*
+     * This indexes only the rows that were added after the last indexed byte.
+     */
+    private static void extend() {
+        int before = rows.size();
+        try (RowReader reader = new RowReader(PayrollIOUtil.dataFile(), indexedBytes)) {
+            indexFrom(reader);
+        } catch (IOException e) {
+            e.printStackTrace();
+            rebuild();
+            return;
+        }
+
+        appendToSidecar(rows.subList(before, rows.size()));
+    }
+
+    private static void indexFrom(RowReader reader) throws IOException {
+        PayrollIOUtil.Columns cols = PayrollIOUtil.columns();
+        CsvCodec.Reader parser = CsvCodec.Reader.forLines();
+        String line;
+        while (true) {
+            long start = reader.position();
+            if ((line = reader.next()) == null) break;
+
+            String[] key = PayrollIOUtil.keyOf(parser, line, cols);
+            if (key != null) add(key[0], key[1], start, reader.position());
+            indexedBytes = reader.position();
+        }
+    }
+
+    private static void add(String empNo, String month, long offset, long end) {
+        rows.add(new IndexedRow(empNo, month, offset, end));
+        offsets.computeIfAbsent(empNo, k -> new HashMap<>())
+                .computeIfAbsent(month, k -> new ArrayList<>())
+                .add(offset);
+
+        // Same rule as before: the first row of the newest month wins
+        YearMonth ym = YearMonth.parse(month);
+        YearMonth current = latestMonth.get(empNo);
+        if (current == null || ym.isAfter(current)) {
+            latestMonth.put(empNo, ym);
+            latestOffset.put(empNo, offset);
+        }
+
+        lastKey = empNo + "," + month;
+        lastOffset = offset;
+        lastEnd = end;
+    }
+
+    /*
+     * This checks that the last indexed row is still at the same place
+     * with the same key. If it is, the file was only appended to.
+     */
+    private static boolean lastRowStillMatches() {
+        if (lastOffset < 0) {
+            return PayrollIOUtil.dataFile().length() >= dataStart;
+        }
+
+        try (RowReader reader = new RowReader(PayrollIOUtil.dataFile(), lastOffset)) {
+            String line = reader.next();
+            if (line == null || reader.position() != lastEnd) return false;
+
+            String[] key = PayrollIOUtil.keyOf(CsvCodec.Reader.forLines(), line, PayrollIOUtil.columns());
+            return key != null && lastKey.equals(key[0] + "," + key[1]);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean loadSidecar() {
+        File f = new File(INDEX_PATH);
+        if (!f.exists()) return false;
+
+        clear();
+        try (BufferedReader br = new BufferedReader(new FileReader(f, StandardCharsets.UTF_8))) {
+            String line = br.readLine();
+            if (line == null || !line.startsWith(HEADER_PREFIX)) return false;
+
+            dataStart = Long.parseLong(line.substring(HEADER_PREFIX.length()).trim());
+            indexedBytes = dataStart;
+
+            while ((line = br.readLine()) != null) {
+                if (line.isEmpty()) continue;
+
+                String[] p = line.split(",", -1);
+                if (p.length < 4) return false;
+
+                long end = Long.parseLong(p[3]);
+                add(p[0], p[1], Long.parseLong(p[2]), end);
+                indexedBytes = end;
+            }
+        } catch (Exception e) {
+            clear();
+            return false;
+        }
+
+        // The sidecar may be from an older payroll file
+        if (PayrollIOUtil.dataFile().length() < indexedBytes || !lastRowStillMatches()) {
+            clear();
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeSidecar() {
+        File target = new File(INDEX_PATH);
+        File temp = new File(INDEX_PATH + ".tmp");
+
+        try {
+            try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(temp, StandardCharsets.UTF_8)))) {
+                pw.println(HEADER_PREFIX + dataStart);
+                for (IndexedRow r : rows) {
+                    pw.println(r.empNo + "," + r.month + "," + r.offset + "," + r.end);
+                }
+            }
+
+            try {
+                Files.move(temp.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void appendToSidecar(String empNo, String month, long offset, long end) {
+        appendToSidecar(Collections.singletonList(new IndexedRow(empNo, month, offset, end)));
+    }
+
+    // A batch of new rows is added to the sidecar in one write
+    private static void appendToSidecar(List<IndexedRow> added) {
+        if (added.isEmpty()) return;
+
+        File f = new File(INDEX_PATH);
+        if (!f.exists()) {
+            writeSidecar();
+            return;
+        }
+
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(f, StandardCharsets.UTF_8, true)))) {
+            for (IndexedRow r : added) {
+                pw.println(r.empNo + "," + r.month + "," + r.offset + "," + r.end);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void clear() {
+        offsets = new HashMap<>();
+        rows = new ArrayList<>();
+        latestOffset = new HashMap<>();
+        latestMonth = new HashMap<>();
+        indexedBytes = -1;
+        dataStart = -1;
+        lastKey = null;
+        lastOffset = -1;
+        lastEnd = -1;
+    }
+
+    private static class IndexedRow {
+        final String empNo;
+        final String month;
+        final long offset;
+        final long end;
+
+        IndexedRow(String empNo, String month, long offset, long end) {
+            this.empNo = empNo;
+            this.month = month;
+            this.offset = offset;
+            this.end = end;
+        }
+    }
+
+    /*
+     * This reads a file row by row while keeping track of the byte position,
+     * which BufferedReader cannot do. Line breaks inside quoted fields stay
+     * part of the row. Blank lines are skipped.
+     */
+    private static class RowReader implements Closeable {
+        private final InputStream in;
+        private long position;
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+
+        RowReader(File file, long offset) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            channel.position(offset);
+            this.in = new BufferedInputStream(Channels.newInputStream(channel));
+            this.position = offset;
+        }
+
+        long position() {
+            return position;
+        }
+
+        String next() throws IOException {
+            while (true) {
+                buf.reset();
+                int b;
+                boolean any = false;
+                boolean inQuotes = false;
+                while ((b = in.read()) != -1) {
+                    any = true;
+                    position++;
+                    if (b == '"') inQuotes = !inQuotes;
+                    if (b == '\n' && !inQuotes) break;
+                    buf.write(b);
+                }
+                if (!any) return null;
+
+                String line = new String(buf.toByteArray(), StandardCharsets.UTF_8);
+                if (line.endsWith("\r")) line = line.substring(0, line.length() - 1);
+                if (!line.trim().isEmpty()) return line;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
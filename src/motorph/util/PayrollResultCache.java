@@ -0,0 +1,138 @@
+package motorph.util;
+
+import motorph.model.Employee;
+import motorph.model.PayrollRecord;
+
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * This class keeps computed payroll records by employee number and month,
+ * so looking at the same employee and month again does not summarize
+ * the attendance and compute the payroll again.
+ *
+ * Each record is stored with a stamp of what it was computed from:
+ * the version of the employee's row, the version of the employee's
+ * attendance for the month, the rate tables, the holiday calendar, and
+ * the pay fields of the Employee object that was passed in. A record is
+ * only returned while its stamp is still the current one. Saving an
+ * employee or a timecard changes only the versions of the rows it
+ * touched, so only those records are computed again; a record is never
+ * returned after something it depends on has changed.
+ *
+ * Records are copied in and out, so a caller changing a returned
+ * record does not change the cache.
+ */
+public class PayrollResultCache {
+
+    private static final Map<YearMonth, Map<String, Entry>> byMonth = new ConcurrentHashMap<>();
+
+    /*
+     * This returns the stamp of everything the employee's payroll for the month
+     * depends on right now. Take it before computing, so a change made
+     * during the computation leaves the stored record out of date.
+     */
+    public static Stamp stamp(Employee emp, YearMonth ym) {
+        String empNo = emp.getEmployeeNumber();
+        return new Stamp(
+                EmployeeRepository.versionOf(empNo),
+                AttendanceRepository.versionOf(empNo, ym),
+                RateTables.version(),
+                WorkingDayCalendar.version(),
+                payInputsOf(emp));
+    }
+
+    /*
+     * This returns a copy of the stored record if it was computed with the
+     * same stamp, otherwise null.
+     */
+    public static PayrollRecord get(Employee emp, YearMonth ym, Stamp stamp) {
+        if (emp.getEmployeeNumber() == null) return null;
+
+        Map<String, Entry> month = byMonth.get(ym);
+        Entry e = month == null ? null : month.get(emp.getEmployeeNumber());
+        if (e == null) return null;
+        if (!e.stamp.equals(stamp)) {
+            month.remove(emp.getEmployeeNumber(), e);
+            return null;
+        }
+        return PayrollIOUtil.copyOf(e.record);
+    }
+
+    /*
+     * This stores a copy of the record under the stamp taken before computing it.
+     */
+    public static void put(PayrollRecord record, Stamp stamp) {
+        if (record == null || record.getEmployeeNumber() == null || record.getMonth() == null) return;
+
+        byMonth.computeIfAbsent(record.getMonth(), k -> new ConcurrentHashMap<>())
+                .put(record.getEmployeeNumber(), new Entry(PayrollIOUtil.copyOf(record), stamp));
+    }
+
+    /*
+     * This removes every stored record.
+     */
+    public static void clear() {
+        byMonth.clear();
+    }
+
+    // The Employee fields PayrollCalculator reads, other than the employee number
+    private static String payInputsOf(Employee emp) {
+        return emp.getFullName()
+                + '|' + emp.getBasicSalary()
+                + '|' + emp.getRiceSubsidy()
+                + '|' + emp.getPhoneAllowance()
+                + '|' + emp.getClothingAllowance()
+                + '|' + emp.getHourlyRate();
+    }
+
+    /*
+     * This holds the versions one payroll record was computed from.
+     */
+    public static final class Stamp {
+        private final long employeeVersion;
+        private final long attendanceVersion;
+        private final long ratesVersion;
+        private final long calendarVersion;
+        private final String payInputs;
+
+        private Stamp(long employeeVersion, long attendanceVersion, long ratesVersion,
+                      long calendarVersion, String payInputs) {
+            this.employeeVersion = employeeVersion;
+            this.attendanceVersion = attendanceVersion;
+            this.ratesVersion = ratesVersion;
+            this.calendarVersion = calendarVersion;
+            this.payInputs = payInputs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Stamp)) return false;
+
+            Stamp s = (Stamp) o;
+            return employeeVersion == s.employeeVersion
+                    && attendanceVersion == s.attendanceVersion
+                    && ratesVersion == s.ratesVersion
+                    && calendarVersion == s.calendarVersion
+                    && payInputs.equals(s.payInputs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(employeeVersion, attendanceVersion, ratesVersion, calendarVersion, payInputs);
+        }
+    }
+
+    private static class Entry {
+        final PayrollRecord record;
+        final Stamp stamp;
+
+        Entry(PayrollRecord record, Stamp stamp) {
+            this.record = record;
+            this.stamp = stamp;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package motorph.util;
+
+import motorph.model.PayrollRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * This class compares two runs of the same payroll, for example the saved
+ * records of a month against a run made after a tax table change or a
+ * timecard correction, and tells which employees' pay changed.
+ *
+ * The first run is put in a linked hash map by employee number. The second run
+ * is then read once: each record is looked up, compared field by field
+ * and taken out of the map, so what is left in the map at the end are
+ * the employees that are no longer paid. The whole comparison is linear
+ * in the number of records.
+ *
+ * Money is compared in whole centavos, so amounts that print the same
+ * are never reported as changed.
+ */
+public class PayrollRunDiff {
+
+    /*
+     * These are the fields that are compared, in payslip order.
+     */
+    public enum Field {
+        DAYS_PRESENT("Days Present", false),
+        LATE_MINUTES("Late Minutes", false),
+        LATE_DEDUCTION("Late Deduction", true),
+        BASIC_EARNED("Basic Earned", true),
+        ALLOWANCES_EARNED("Allowances Earned", true),
+        GROSS_PAY("Gross Pay", true),
+        SSS("SSS", true),
+        PHILHEALTH("PhilHealth", true),
+        PAGIBIG("Pag-IBIG", true),
+        TOTAL_GOV("Total Gov", true),
+        TAXABLE_INCOME("Taxable Income", true),
+        WITHHOLDING_TAX("Withholding Tax", true),
+        NET_PAY("Net Pay", true);
+
+        private final String label;
+        private final boolean money;
+
+        Field(String label, boolean money) {
+            this.label = label;
+            this.money = money;
+        }
+
+        public String getLabel() { return label; }
+
+        // Money fields are in centavos, counts as they are
+        private static long[] valuesOf(PayrollRecord pr) {
+            return new long[]{
+                    pr.getDaysPresent(),
+                    pr.getLateMinutes(),
+                    Money.ofPesos(pr.getLateDeduction()),
+                    Money.ofPesos(pr.getMonthlyBasicSalary()),
+                    Money.ofPesos(pr.getTotalAllowancesMonthly()),
+                    Money.ofPesos(pr.getGrossPay()),
+                    Money.ofPesos(pr.getSss()),
+                    Money.ofPesos(pr.getPhilHealth()),
+                    Money.ofPesos(pr.getPagIbig()),
+                    Money.ofPesos(pr.getTotalDeductionsBeforeTax()),
+                    Money.ofPesos(pr.getTaxableIncome()),
+                    Money.ofPesos(pr.getWithholdingTax()),
+                    Money.ofPesos(pr.getNetPay())
+            };
+        }
+
+        private double toValue(long v) {
+            return money ? Money.toPesos(v) : v;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    /*
+     * This compares the before and after records. If a run has more than one
+     * record of an employee, the last one counts, as when reading the payroll file.
+     */
+    public static Result compare(Collection<PayrollRecord> before, Collection<PayrollRecord> after) {
+        // Keeps the order of the first run; a later duplicate replaces the record but not its place
+        Map<String, PayrollRecord> left = new LinkedHashMap<>(Math.max(16, before.size() * 4 / 3 + 1));
+        for (PayrollRecord pr : before) {
+            left.put(pr.getEmployeeNumber(), pr);
+        }
+
+        Map<String, PayrollRecord> right = new HashMap<>(Math.max(16, after.size() * 4 / 3 + 1));
+        List<String> order = new ArrayList<>(after.size());
+        for (PayrollRecord pr : after) {
+            if (right.put(pr.getEmployeeNumber(), pr) == null) order.add(pr.getEmployeeNumber());
+        }
+
+        Result result = new Result();
+        for (String empNo : order) {
+            PayrollRecord b = left.remove(empNo);
+            PayrollRecord a = right.get(empNo);
+
+            if (b == null) {
+                result.added.add(a);
+                result.addToTotals(null, Field.valuesOf(a));
+                continue;
+            }
+
+            long[] bv = Field.valuesOf(b);
+            long[] av = Field.valuesOf(a);
+            long[] delta = new long[FIELDS.length];
+            boolean changed = false;
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = av[i] - bv[i];
+                if (delta[i] != 0) changed = true;
+            }
+
+            if (changed) {
+                result.changed.add(new Change(b, a, delta));
+                result.addToTotals(bv, av);
+            } else {
+                result.unchanged++;
+            }
+        }
+
+        // Whatever was not matched is no longer in the second run
+        for (PayrollRecord pr : left.values()) {
+            result.removed.add(pr);
+            result.addToTotals(Field.valuesOf(pr), null);
+        }
+        return result;
+    }
+
+    /*
+     * This holds one employee whose record differs between the runs.
+     */
+    public static class Change {
+        private final PayrollRecord before;
+        private final PayrollRecord after;
+        private final long[] delta;
+
+        Change(PayrollRecord before, PayrollRecord after, long[] delta) {
+            this.before = before;
+            this.after = after;
+            this.delta = delta;
+        }
+
+        public String getEmployeeNumber() { return after.getEmployeeNumber(); }
+        public String getEmployeeName() { return after.getEmployeeName(); }
+        public PayrollRecord getBefore() { return before; }
+        public PayrollRecord getAfter() { return after; }
+
+        /*
+         * This returns after minus before; pesos for money fields.
+         */
+        public double getDelta(Field f) {
+            return f.toValue(delta[f.ordinal()]);
+        }
+
+        /*
+         * This returns the fields that differ, in payslip order.
+         */
+        public List<Field> getChangedFields() {
+            List<Field> out = new ArrayList<>();
+            for (Field f : FIELDS) {
+                if (delta[f.ordinal()] != 0) out.add(f);
+            }
+            return out;
+        }
+    }
+
+    /*
+     * This holds the outcome of a comparison. The changed and added lists
+     * are in the order of the second run, removed in the order of the first.
+     */
+    public static class Result {
+        private final List<Change> changed = new ArrayList<>();
+        private final List<PayrollRecord> added = new ArrayList<>();
+        private final List<PayrollRecord> removed = new ArrayList<>();
+        private final long[] totalDelta = new long[FIELDS.length];
+        private int unchanged;
+
+        private void addToTotals(long[] before, long[] after) {
+            for (int i = 0; i < totalDelta.length; i++) {
+                totalDelta[i] += (after == null ? 0 : after[i]) - (before == null ? 0 : before[i]);
+            }
+        }
+
+        public List<Change> getChanged() { return Collections.unmodifiableList(changed); }
+        public List<PayrollRecord> getAdded() { return Collections.unmodifiableList(added); }
+        public List<PayrollRecord> getRemoved() { return Collections.unmodifiableList(removed); }
+        public int getUnchangedCount() { return unchanged; }
+
+        public boolean isEmpty() {
+            return changed.isEmpty() && added.isEmpty() && removed.isEmpty();
+        }
+
+        /*
+         * This returns how much a field changed over the whole run,
+         * counting added and removed employees.
+         */
+        public double getTotalDelta(Field f) {
+            return f.toValue(totalDelta[f.ordinal()]);
+        }
+
+        public Map<Field, Double> getTotalDeltas() {
+            Map<Field, Double> out = new EnumMap<>(Field.class);
+            for (Field f : FIELDS) {
+                if (totalDelta[f.ordinal()] != 0) out.put(f, f.toValue(totalDelta[f.ordinal()]));
+            }
+            return out;
+        }
+
+        /*
+         * This formats the comparison as readable text, one line per changed field.
+         */
+        public String formatSummaryText() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Changed: ").append(changed.size())
+                    .append("  Added: ").append(added.size())
+                    .append("  Removed: ").append(removed.size())
+                    .append("  Unchanged: ").append(unchanged).append("\n");
+
+            for (Change c : changed) {
+                sb.append("\n").append(c.getEmployeeNumber()).append(" ").append(c.getEmployeeName()).append("\n");
+                long[] bv = Field.valuesOf(c.before);
+                for (Field f : c.getChangedFields()) {
+                    int i = f.ordinal();
+                    sb.append("  ").append(f.getLabel()).append(": ")
+                            .append(format(f, bv[i])).append(" -> ")
+                            .append(format(f, bv[i] + c.delta[i])).append(" (")
+                            .append(signed(f, c.delta[f.ordinal()])).append(")\n");
+                }
+            }
+            for (PayrollRecord pr : added) {
+                sb.append("\n+ ").append(pr.getEmployeeNumber()).append(" ").append(pr.getEmployeeName())
+                        .append("  Net Pay ").append(format(Field.NET_PAY, Money.ofPesos(pr.getNetPay()))).append("\n");
+            }
+            for (PayrollRecord pr : removed) {
+                sb.append("\n- ").append(pr.getEmployeeNumber()).append(" ").append(pr.getEmployeeName())
+                        .append("  Net Pay ").append(format(Field.NET_PAY, Money.ofPesos(pr.getNetPay()))).append("\n");
+            }
+
+            Map<Field, Double> totals = getTotalDeltas();
+            if (!totals.isEmpty()) {
+                sb.append("\nTotal change\n");
+                for (Field f : totals.keySet()) {
+                    sb.append("  ").append(f.getLabel()).append(": ").append(signed(f, totalDelta[f.ordinal()])).append("\n");
+                }
+            }
+            return sb.toString();
+        }
+
+        private static String format(Field f, long v) {
+            return f.money ? String.format("%,.2f", Money.toPesos(v)) : String.valueOf(v);
+        }
+
+        private static String signed(Field f, long v) {
+            return (v > 0 ? "+" : "") + format(f, v);
+        }
+    }
+}
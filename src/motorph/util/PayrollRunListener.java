@@ -0,0 +1,33 @@
+package motorph.util;
+
+import motorph.model.Employee;
+import motorph.model.PayrollRecord;
+
+/*
+ * This interface receives the results of a month-end payroll run
+ * one employee at a time, so a screen can show rows while the run
+ * is still going and stop it part way.
+ */
+public interface PayrollRunListener {
+
+    /*
+     * This is called once per employee, in employee list order.
+     * record is null when the employee has no attendance for the month
+     * or could not be computed.
+     */
+    void employeeDone(int done, int total, PayrollRecord record);
+
+    /*
+     * This is called just before employeeDone when the employee could not
+     * be computed, so the run can tell which employees are missing from it.
+     */
+    default void employeeFailed(Employee employee, Exception error) {
+    }
+
+    /*
+     * The run stops before the next employee when this returns true.
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
@@ -0,0 +1,415 @@
+package motorph.util;
+
+import motorph.model.Employee;
+import motorph.model.PayrollRecord;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * This class runs and saves a month-end payroll as five explicit stages:
+ *
+ *   LOAD       the employee list
+ *   AGGREGATE  the month's attendance, summarized once for everyone
+ *   COMPUTE    the payroll records, one batch of employees at a time
+ *   VALIDATE   checks that each record adds up before it is saved
+ *   PERSIST    appends each batch with PayrollIOUtil.appendPayrollRecords
+ *
+ * COMPUTE, VALIDATE and PERSIST run at the same time on their own threads
+ * and hand batches to each other through small bounded queues, so a slow
+ * disk holds back the computation instead of letting batches pile up in memory.
+ *
+ * After a batch is saved, a checkpoint file records how many employees,
+ * in list order, are saved. If the run stops part way, running the same
+ * month again with the same employee list starts after the last saved
+ * batch. Before the first batch, the month's old rows of every employee
+ * still to be saved are removed with one rewrite of the payroll file, so
+ * a re-run, or a batch that was saved just before the checkpoint could be
+ * written, leaves no duplicates and the batches themselves only append.
+ * The checkpoint is removed when the run finishes.
+ */
+public class PayrollRunPipeline {
+
+    public enum Stage { LOAD, AGGREGATE, COMPUTE, VALIDATE, PERSIST }
+
+    private static final int DEFAULT_BATCH_SIZE = 200;
+
+    // Batches that may wait between two stages
+    private static final int QUEUE_CAPACITY = 4;
+
+    private static final String CHECKPOINT_HEADER = "Month,Employees,Fingerprint,Committed";
+
+    // Marks the end of the batches; FAILED also means an earlier stage stopped with an error
+    private static final Batch END = new Batch(-1, -1);
+    private static final Batch FAILED = new Batch(-1, -1);
+
+    private final PayrollService payrollService;
+    private final int batchSize;
+
+    public PayrollRunPipeline() {
+        this(new DefaultPayrollService());
+    }
+
+    public PayrollRunPipeline(PayrollService payrollService) {
+        this(payrollService, DEFAULT_BATCH_SIZE);
+    }
+
+    /*
+     * A DefaultPayrollService, or a subclass, computes each employee from
+     * the month's attendance summarized once, as it would in its own runs.
+     * Any other service computes each employee with computeForEmployeeMonth.
+     */
+    public PayrollRunPipeline(PayrollService payrollService, int batchSize) {
+        this.payrollService = payrollService;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /*
+     * This runs the month for every employee in the employee file.
+     */
+    public Result run(YearMonth ym) {
+        long start = System.nanoTime();
+        List<Employee> employees = EmployeeRepository.findAll();
+        return run(employees, ym, System.nanoTime() - start);
+    }
+
+    public Result run(List<Employee> employees, YearMonth ym) {
+        long start = System.nanoTime();
+        List<Employee> copy = new ArrayList<>(employees);
+        return run(copy, ym, System.nanoTime() - start);
+    }
+
+    private Result run(List<Employee> employees, YearMonth ym, long loadNanos) {
+        Result result = new Result(ym, employees.size());
+        result.nanos[Stage.LOAD.ordinal()] = loadNanos;
+
+        long fingerprint = fingerprintOf(employees);
+        int startAt = readCheckpoint(ym, employees.size(), fingerprint);
+        result.resumedAt = startAt;
+
+        long t = System.nanoTime();
+        Map<String, AttendanceUtil.AttendanceSummary> summaries = payrollService instanceof DefaultPayrollService
+                ? AttendanceUtil.summarizeAllForMonth(ym)
+                : Collections.emptyMap();
+        result.nanos[Stage.AGGREGATE.ordinal()] = System.nanoTime() - t;
+
+        // One rewrite for the whole run; the batches below only append
+        t = System.nanoTime();
+        PayrollIOUtil.removePayrollRecords(employeeNumbers(employees, startAt), ym);
+        long clearNanos = System.nanoTime() - t;
+
+        BlockingQueue<Batch> computed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Batch> validated = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Throwable[] stageError = new Throwable[1];
+
+        ExecutorService stages = Executors.newFixedThreadPool(2);
+        try {
+            Future<Long> computeTime = stages.submit(() -> {
+                long busy = 0;
+                try {
+                    for (int from = startAt; from < employees.size(); from += batchSize) {
+                        long s = System.nanoTime();
+                        Batch b = compute(employees, ym, summaries, from, Math.min(employees.size(), from + batchSize));
+                        busy += System.nanoTime() - s;
+                        computed.put(b);
+                    }
+                    computed.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    stageError[0] = e;
+                    computed.put(FAILED);
+                }
+                return busy;
+            });
+
+            Future<Long> validateTime = stages.submit(() -> {
+                long busy = 0;
+                try {
+                    while (true) {
+                        Batch b = computed.take();
+                        if (b == END || b == FAILED) {
+                            validated.put(b);
+                            break;
+                        }
+                        long s = System.nanoTime();
+                        validate(b);
+                        busy += System.nanoTime() - s;
+                        validated.put(b);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    stageError[0] = e;
+                    validated.put(FAILED);
+                }
+                return busy;
+            });
+
+            // PERSIST runs here, so batches are saved and checkpointed in list order
+            long persistBusy = clearNanos;
+
+            // Employees saved earlier in this run, or by the stopped run, are not appended twice
+            Set<String> saved = new HashSet<>(employeeNumbers(employees.subList(0, startAt), 0));
+            while (true) {
+                Batch b = validated.take();
+                if (b == END) break;
+                if (b == FAILED) {
+                    // The queue hand-off makes the stage's error visible here
+                    throw new RuntimeException("Payroll run stopped in an earlier stage.", stageError[0]);
+                }
+
+                long s = System.nanoTime();
+                b.records.removeIf(pr -> !saved.add(pr.getEmployeeNumber()));
+                PayrollIOUtil.appendPayrollRecords(b.records);
+                writeCheckpoint(ym, employees.size(), fingerprint, b.to);
+                persistBusy += System.nanoTime() - s;
+
+                result.add(b);
+            }
+
+            result.nanos[Stage.COMPUTE.ordinal()] = computeTime.get();
+            result.nanos[Stage.VALIDATE.ordinal()] = validateTime.get();
+            result.nanos[Stage.PERSIST.ordinal()] = persistBusy;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Payroll run was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Payroll run failed.", e.getCause());
+        } finally {
+            // Stops the other stages if persisting failed
+            stages.shutdownNow();
+        }
+
+        deleteCheckpoint(ym);
+        return result;
+    }
+
+    /*
+     * A failing employee is left out of the batch and reported; it does not stop the run.
+     */
+    private Batch compute(List<Employee> employees, YearMonth ym,
+                          Map<String, AttendanceUtil.AttendanceSummary> summaries, int from, int to) {
+        Batch b = new Batch(from, to);
+        for (int i = from; i < to; i++) {
+            Employee e = employees.get(i);
+            try {
+                PayrollRecord pr = payrollService instanceof DefaultPayrollService
+                        ? ((DefaultPayrollService) payrollService).computeFromSummary(e, ym, summaries.get(e.getEmployeeNumber()))
+                        : payrollService.computeForEmployeeMonth(e, ym);
+                if (pr != null) b.records.add(pr);
+            } catch (Exception ex) {
+                b.problems.put(e.getEmployeeNumber(), "Could not be computed: " + ex.getMessage());
+            }
+        }
+        return b;
+    }
+
+    /*
+     * This takes out the records that do not add up, so they are never saved.
+     * The checks are the sums PayrollCalculator works by, in centavos.
+     */
+    private static void validate(Batch b) {
+        List<PayrollRecord> valid = new ArrayList<>(b.records.size());
+        for (PayrollRecord pr : b.records) {
+            String problem = problemOf(pr);
+            if (problem == null) valid.add(pr);
+            else b.problems.put(pr.getEmployeeNumber(), problem);
+        }
+        b.records = valid;
+    }
+
+    private static String problemOf(PayrollRecord pr) {
+        if (pr.getEmployeeNumber() == null || pr.getEmployeeNumber().isEmpty()) return "No employee number.";
+        if (pr.getMonth() == null) return "No month.";
+        if (pr.getDaysPresent() < 0 || pr.getLateMinutes() < 0) return "Negative attendance.";
+
+        long basic = Money.ofPesos(pr.getMonthlyBasicSalary());
+        long allowances = Money.ofPesos(pr.getTotalAllowancesMonthly());
+        long late = Money.ofPesos(pr.getLateDeduction());
+        long gross = Money.ofPesos(pr.getGrossPay());
+        long gov = Money.ofPesos(pr.getTotalDeductionsBeforeTax());
+        long taxable = Money.ofPesos(pr.getTaxableIncome());
+        long tax = Money.ofPesos(pr.getWithholdingTax());
+        long net = Money.ofPesos(pr.getNetPay());
+
+        if (basic < 0 || allowances < 0 || late < 0 || tax < 0) return "Negative amount.";
+        if (gross != Math.max(0, basic + allowances - late)) return "Gross pay does not match earnings less late deduction.";
+        if (gov != Money.ofPesos(pr.getSss()) + Money.ofPesos(pr.getPhilHealth()) + Money.ofPesos(pr.getPagIbig())) {
+            return "Total Gov does not match SSS, PhilHealth and Pag-IBIG.";
+        }
+        if (taxable != Math.max(0, gross - gov)) return "Taxable income does not match gross pay less Total Gov.";
+        if (net != Math.max(0, gross - gov - tax)) return "Net pay does not match gross pay less deductions.";
+        return null;
+    }
+
+    private static List<String> employeeNumbers(List<Employee> employees, int from) {
+        List<String> out = new ArrayList<>(employees.size() - from);
+        for (int i = from; i < employees.size(); i++) {
+            out.add(employees.get(i).getEmployeeNumber());
+        }
+        return out;
+    }
+
+    // Employee numbers in list order; a different list does not resume an old checkpoint
+    private static long fingerprintOf(List<Employee> employees) {
+        long h = employees.size();
+        for (Employee e : employees) {
+            h = h * 31 + String.valueOf(e.getEmployeeNumber()).hashCode();
+        }
+        return h;
+    }
+
+    private static File checkpointFile(YearMonth ym) {
+        return new File("data", "payroll_run_" + ym + ".checkpoint");
+    }
+
+    /*
+     * This returns how many employees a stopped run of the month already saved,
+     * or 0 if there is no checkpoint or it was made for another employee list.
+     */
+    private static int readCheckpoint(YearMonth ym, int employees, long fingerprint) {
+        File f = checkpointFile(ym);
+        if (!f.exists()) return 0;
+
+        try (CsvCodec.Reader r = new CsvCodec.Reader(new BufferedReader(new FileReader(f)))) {
+            if (!r.next() || !r.next()) return 0;
+
+            boolean same = ym.toString().equals(r.get(0))
+                    && r.getInt(1, -1) == employees
+                    && String.valueOf(fingerprint).equals(r.get(2));
+            int committed = r.getInt(3, 0);
+            return same ? Math.max(0, Math.min(committed, employees)) : 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /*
+     * The checkpoint is written to a temp file first and then moved over
+     * the old one, so a crash never leaves a half-written checkpoint.
+     */
+    private static void writeCheckpoint(YearMonth ym, int employees, long fingerprint, int committed) {
+        File target = checkpointFile(ym);
+        File temp = new File(target.getPath() + ".tmp");
+
+        try {
+            try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(temp)))) {
+                pw.println(CHECKPOINT_HEADER);
+                pw.println(CsvCodec.row(new String[]{
+                        ym.toString(),
+                        String.valueOf(employees),
+                        String.valueOf(fingerprint),
+                        String.valueOf(committed)
+                }));
+            }
+
+            try {
+                Files.move(temp.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void deleteCheckpoint(YearMonth ym) {
+        try {
+            Files.deleteIfExists(checkpointFile(ym).toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * This holds the employees from index from up to to of the list,
+     * and their records once computed.
+     */
+    private static class Batch {
+        final int from;
+        final int to;
+        List<PayrollRecord> records = new ArrayList<>();
+        final Map<String, String> problems = new LinkedHashMap<>();
+
+        Batch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /*
+     * This holds what one run did. Employees saved by an earlier, stopped
+     * run of the month are not counted again; getResumedAt() tells how many there were.
+     */
+    public static class Result {
+        private final YearMonth month;
+        private final int employees;
+        private int resumedAt;
+        private int batches;
+        private int saved;
+        private final Map<String, String> problems = new LinkedHashMap<>();
+        private final long[] nanos = new long[Stage.values().length];
+
+        Result(YearMonth month, int employees) {
+            this.month = month;
+            this.employees = employees;
+        }
+
+        void add(Batch b) {
+            batches++;
+            saved += b.records.size();
+            problems.putAll(b.problems);
+        }
+
+        public YearMonth getMonth() { return month; }
+        public int getEmployeeCount() { return employees; }
+
+        public boolean isResumed() { return resumedAt > 0; }
+        public int getResumedAt() { return resumedAt; }
+
+        public int getBatchCount() { return batches; }
+        public int getSavedCount() { return saved; }
+
+        /*
+         * The employees that were not saved because they could not be
+         * computed or did not pass validation, with the reason.
+         */
+        public Map<String, String> getProblems() { return Collections.unmodifiableMap(problems); }
+
+        /*
+         * The time each stage spent working, not counting time spent
+         * waiting for the stage before or after it.
+         */
+        public long getStageMillis(Stage stage) {
+            return nanos[stage.ordinal()] / 1_000_000;
+        }
+
+        public Map<Stage, Long> getStageMillis() {
+            Map<Stage, Long> out = new EnumMap<>(Stage.class);
+            for (Stage s : Stage.values()) {
+                out.put(s, getStageMillis(s));
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package motorph.util;
+
+import motorph.model.Employee;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/*
+ * This class describes one what-if case for PayrollSimulation:
+ * a salary increase for everyone, new monthly allowances, and
+ * contribution or tax tables to use instead of the ones in force.
+ * Anything that is not set stays as it is in the employee file
+ * and the rate files.
+ */
+public class PayrollScenario {
+
+    private final String name;
+
+    private double salaryIncreasePercent;
+    private Double riceSubsidy;
+    private Double phoneAllowance;
+    private Double clothingAllowance;
+    private final Map<RateTables.Kind, RateTable> rates = new EnumMap<>(RateTables.Kind.class);
+
+    public PayrollScenario(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    /*
+     * The increase is applied to the basic salary and the hourly rate,
+     * so late deductions follow the new pay. 5 means 5%.
+     */
+    public double getSalaryIncreasePercent() { return salaryIncreasePercent; }
+    public void setSalaryIncreasePercent(double salaryIncreasePercent) { this.salaryIncreasePercent = salaryIncreasePercent; }
+
+    /*
+     * A null allowance keeps each employee's own amount.
+     */
+    public Double getRiceSubsidy() { return riceSubsidy; }
+    public void setRiceSubsidy(Double riceSubsidy) { this.riceSubsidy = riceSubsidy; }
+
+    public Double getPhoneAllowance() { return phoneAllowance; }
+    public void setPhoneAllowance(Double phoneAllowance) { this.phoneAllowance = phoneAllowance; }
+
+    public Double getClothingAllowance() { return clothingAllowance; }
+    public void setClothingAllowance(Double clothingAllowance) { this.clothingAllowance = clothingAllowance; }
+
+    /*
+     * This replaces one table, for example a new SSS schedule read with RateTables.read.
+     */
+    public void setRateTable(RateTables.Kind kind, RateTable table) {
+        if (table == null) rates.remove(kind);
+        else rates.put(kind, table);
+    }
+
+    public Map<RateTables.Kind, RateTable> getRateTables() {
+        return Collections.unmodifiableMap(rates);
+    }
+
+    /*
+     * This returns a copy of the employee with the scenario's pay applied.
+     * The employee passed in is not changed.
+     */
+    Employee apply(Employee emp) {
+        Employee e = EmployeeRepository.copyOf(emp);
+
+        if (salaryIncreasePercent != 0) {
+            long basisPoints = Math.round(salaryIncreasePercent * 100);
+            e.setBasicSalary(raise(emp.getBasicSalary(), basisPoints));
+            e.setHourlyRate(raise(emp.getHourlyRate(), basisPoints));
+        }
+        if (riceSubsidy != null) e.setRiceSubsidy(riceSubsidy);
+        if (phoneAllowance != null) e.setPhoneAllowance(phoneAllowance);
+        if (clothingAllowance != null) e.setClothingAllowance(clothingAllowance);
+        return e;
+    }
+
+    private static double raise(double pesos, long basisPoints) {
+        return Money.toPesos(Math.max(0, Money.times(Money.ofPesos(pesos), 10_000 + basisPoints, 10_000)));
+    }
+}
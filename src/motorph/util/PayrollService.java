@@ -1,6 +1,7 @@
 package motorph.util;
 
 import motorph.model.Employee;
+import motorph.model.PayPeriod;
 import motorph.model.PayrollRecord;
 
 import java.time.YearMonth;
@@ -25,6 +26,30 @@ public interface PayrollService {
      */
     List<PayrollRecord> computeForAllEmployeesMonth(List<Employee> employees, YearMonth ym);
 
+    /*
+     * This computes payroll for all employees for the selected month
+     * and hands each result to the listener as soon as it is ready.
+     */
+    void computeForAllEmployeesMonth(List<Employee> employees, YearMonth ym, PayrollRunListener listener);
+
+    /*
+     * This computes payroll for all employees for every month
+     * from one month to another, both included, with totals per employee.
+     */
+    PayrollRangeResult computeForAllEmployeesRange(List<Employee> employees, YearMonth from, YearMonth to);
+
+    /*
+     * This computes payroll for one employee
+     * for a semi-monthly pay period.
+     */
+    PayrollRecord computeForEmployeePeriod(Employee emp, PayPeriod period);
+
+    /*
+     * This computes payroll for all employees
+     * for a semi-monthly pay period.
+     */
+    List<PayrollRecord> computeForAllEmployeesPeriod(List<Employee> employees, PayPeriod period);
+
     /*
      * This saves a payroll record.
      */
@@ -0,0 +1,180 @@
+package motorph.util;
+
+import motorph.model.Employee;
+import motorph.model.PayrollRecord;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * This class answers "what would the payroll of this month cost if ..."
+ * without touching employees.csv, the rate files or the saved payroll.
+ *
+ * The employee list and the month's attendance summaries are taken once,
+ * when the simulation is created. Every scenario is then computed from
+ * that same snapshot, so trying one more scenario only costs the
+ * computation itself; attendance is not read again, and the results
+ * stay comparable even if timecards are edited in the meantime.
+ *
+ * Records are computed directly with PayrollCalculator and never go
+ * through PayrollResultCache, so simulated pay can not be mistaken for
+ * the real payroll. Scenarios are split into chunks of employees and
+ * computed on the executor by ChunkedRunner, as in ParallelPayrollService.
+ */
+public class PayrollSimulation {
+
+    private final YearMonth month;
+    private final List<Employee> employees;
+    private final Map<String, AttendanceUtil.AttendanceSummary> attendance;
+
+    private final ChunkedRunner runner;
+
+    private final Result baseline;
+
+    public PayrollSimulation(List<Employee> employees, YearMonth month) {
+        this(employees, month, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+    }
+
+    public PayrollSimulation(List<Employee> employees, YearMonth month, ExecutorService executor, int parallelism) {
+        this.month = month;
+        this.runner = new ChunkedRunner(executor, parallelism, "Payroll simulation");
+
+        List<Employee> copies = new ArrayList<>(employees.size());
+        for (Employee e : employees) {
+            copies.add(EmployeeRepository.copyOf(e));
+        }
+        this.employees = Collections.unmodifiableList(copies);
+        this.attendance = Collections.unmodifiableMap(AttendanceUtil.summarizeAllForMonth(month));
+
+        // The current pay, computed from the same snapshot as every scenario
+        this.baseline = compute(Collections.singletonList(new PayrollScenario("Current")), null).get(0);
+    }
+
+    public YearMonth getMonth() { return month; }
+
+    /*
+     * This returns the payroll of the month as it is now.
+     */
+    public Result getBaseline() {
+        return baseline;
+    }
+
+    public Result run(PayrollScenario scenario) {
+        return runAll(Collections.singletonList(scenario)).get(0);
+    }
+
+    /*
+     * This computes the scenarios together, so all of them share the
+     * executor at once, and returns their results in the same order.
+     */
+    public List<Result> runAll(List<PayrollScenario> scenarios) {
+        return compute(scenarios, baseline);
+    }
+
+    private List<Result> compute(List<PayrollScenario> scenarios, Result base) {
+        int n = employees.size();
+        int s = scenarios.size();
+        PayrollRecord[][] results = new PayrollRecord[s][n];
+        Exception[][] errors = new Exception[s][n];
+
+        runner.run(s, n, (k, from, to) -> computeRange(scenarios.get(k), from, to, results[k], errors[k]));
+
+        List<Result> out = new ArrayList<>(s);
+        for (int k = 0; k < s; k++) {
+            Result r = new Result(scenarios.get(k).getName(), base);
+            for (int i = 0; i < n; i++) {
+                if (results[k][i] != null) r.add(results[k][i]);
+                if (errors[k][i] != null) r.failures.put(employees.get(i).getEmployeeNumber(), errors[k][i]);
+            }
+            out.add(r);
+        }
+        return out;
+    }
+
+    private void computeRange(PayrollScenario scenario, int from, int to, PayrollRecord[] results, Exception[] errors) {
+        Map<RateTables.Kind, RateTable> rates = scenario.getRateTables();
+
+        for (int i = from; i < to; i++) {
+            Employee e = employees.get(i);
+            AttendanceUtil.AttendanceSummary summary = attendance.get(e.getEmployeeNumber());
+            if (summary == null || summary.daysPresent <= 0) continue;
+
+            try {
+                results[i] = PayrollCalculator.computeMonthlyPayroll(
+                        scenario.apply(e), month, summary.daysPresent, summary.totalLateMinutes, rates);
+            } catch (Exception ex) {
+                errors[i] = ex;
+            }
+        }
+    }
+
+    /*
+     * This holds the records and totals of one scenario. Totals are added
+     * up in centavos. The deltas are against the current payroll of the
+     * same snapshot; a positive delta means the scenario costs more.
+     */
+    public static class Result {
+        private final String name;
+        private final Result baseline;
+        private final List<PayrollRecord> records = new ArrayList<>();
+        private final Map<String, Exception> failures = new LinkedHashMap<>();
+
+        private long basic;
+        private long allowances;
+        private long lateDeduction;
+        private long grossPay;
+        private long totalGov;
+        private long withholdingTax;
+        private long netPay;
+
+        Result(String name, Result baseline) {
+            this.name = name;
+            this.baseline = baseline;
+        }
+
+        void add(PayrollRecord pr) {
+            records.add(pr);
+            basic += Money.ofPesos(pr.getMonthlyBasicSalary());
+            allowances += Money.ofPesos(pr.getTotalAllowancesMonthly());
+            lateDeduction += Money.ofPesos(pr.getLateDeduction());
+            grossPay += Money.ofPesos(pr.getGrossPay());
+            totalGov += Money.ofPesos(pr.getTotalDeductionsBeforeTax());
+            withholdingTax += Money.ofPesos(pr.getWithholdingTax());
+            netPay += Money.ofPesos(pr.getNetPay());
+        }
+
+        public String getName() { return name; }
+
+        /*
+         * The simulated records, in employee list order. Employees without
+         * attendance in the month have no record.
+         */
+        public List<PayrollRecord> getRecords() { return Collections.unmodifiableList(records); }
+
+        /*
+         * The employees that could not be computed, keyed by employee number.
+         */
+        public Map<String, Exception> getFailures() { return Collections.unmodifiableMap(failures); }
+
+        public int getHeadcount() { return records.size(); }
+
+        public double getBasicEarned() { return Money.toPesos(basic); }
+        public double getAllowancesEarned() { return Money.toPesos(allowances); }
+        public double getLateDeduction() { return Money.toPesos(lateDeduction); }
+        public double getGrossPay() { return Money.toPesos(grossPay); }
+        public double getTotalDeductionsBeforeTax() { return Money.toPesos(totalGov); }
+        public double getWithholdingTax() { return Money.toPesos(withholdingTax); }
+        public double getNetPay() { return Money.toPesos(netPay); }
+
+        public double getGrossPayDelta() { return Money.toPesos(baseline == null ? 0 : grossPay - baseline.grossPay); }
+        public double getTotalDeductionsDelta() { return Money.toPesos(baseline == null ? 0 : totalGov - baseline.totalGov); }
+        public double getWithholdingTaxDelta() { return Money.toPesos(baseline == null ? 0 : withholdingTax - baseline.withholdingTax); }
+        public double getNetPayDelta() { return Money.toPesos(baseline == null ? 0 : netPay - baseline.netPay); }
+    }
+}
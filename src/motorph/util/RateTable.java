@@ -0,0 +1,52 @@
+package motorph.util;
+
+import java.util.Arrays;
+
+/*
+ * This class holds one contribution or tax table as sorted primitive arrays.
+ * Row i applies to amounts from from[i] (inclusive) up to from[i + 1], and gives
+ *   base[i] + (amount - over[i]) * rate[i] / 10000
+ * where rate is in basis points (1% = 100). A flat bracket has rate 0.
+ * All amounts are centavos. Amounts below the first row use the first row,
+ * and a result below zero is zero.
+ *
+ * The bracket is found by binary search, so a lookup is O(log n)
+ * no matter how many brackets the table has.
+ */
+public final class RateTable {
+
+    private final long[] from;
+    private final long[] base;
+    private final long[] over;
+    private final long[] rate;
+
+    /*
+     * The arrays must have the same length and be sorted by from.
+     */
+    RateTable(long[] from, long[] base, long[] over, long[] rate) {
+        if (from.length == 0) throw new IllegalArgumentException("A rate table needs at least one bracket.");
+        if (base.length != from.length || over.length != from.length || rate.length != from.length) {
+            throw new IllegalArgumentException("Rate table columns have different lengths.");
+        }
+        for (int i = 1; i < from.length; i++) {
+            if (from[i] <= from[i - 1]) throw new IllegalArgumentException("Rate table brackets are not in increasing order.");
+        }
+
+        this.from = from;
+        this.base = base;
+        this.over = over;
+        this.rate = rate;
+    }
+
+    /*
+     * This returns the table's amount, in centavos, for an amount in centavos.
+     */
+    public long amountFor(long centavos) {
+        int i = Arrays.binarySearch(from, centavos);
+        if (i < 0) i = Math.max(0, -i - 2); // the bracket before the insertion point
+
+        long v = base[i];
+        if (rate[i] != 0) v += Money.times(centavos - over[i], rate[i], 10_000);
+        return Math.max(0, v);
+    }
+}
@@ -0,0 +1,286 @@
+package motorph.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * This class loads the SSS, PhilHealth, Pag-IBIG, withholding tax, and annual tax tables
+ * from versioned files, one file per table and effective date:
+ *   data/rates/<table>_<yyyy-MM-dd>.csv
+ * for example data/rates/sss_2025-01-01.csv. Each file has the columns
+ *   From,Base,Over,Rate %
+ * with peso amounts; see RateTable for how a row is applied.
+ *
+ * A payroll month uses the newest version that is in force on the first
+ * day of the month, so past months are computed again with the rates
+ * of their time. If there is no file for a table, or every file is newer
+ * than the month, the built-in tables are used.
+ *
+ * The folder is checked for changes at most once per second, and changed
+ * files are loaded again without restarting the program.
+ */
+public class RateTables {
+
+    private static final String DIR = "data/rates";
+
+    // Outside changes to the rate files are noticed within this time
+    private static final long STAMP_CHECK_INTERVAL_NANOS = 1_000_000_000L;
+
+    public enum Kind {
+        SSS("sss"),
+        PHILHEALTH("philhealth"),
+        PAGIBIG("pagibig"),
+        WITHHOLDING_TAX("withholding_tax"),
+        ANNUAL_TAX("annual_tax");
+
+        final String fileName;
+
+        Kind(String fileName) {
+            this.fileName = fileName;
+        }
+    }
+
+    private static final Map<Kind, RateTable> BUILT_IN = builtInTables();
+
+    // The loaded versions; replaced as a whole on reload, so readers need no lock
+    private static volatile Map<Kind, Versions> loaded;
+    private static volatile long lastStampCheck;
+    private static long loadedStamp;
+    private static volatile long version;
+
+    /*
+     * This returns the table of the given kind that is in force for the payroll month.
+     */
+    public static RateTable forMonth(Kind kind, YearMonth ym) {
+        Versions v = current().get(kind);
+        RateTable t = v == null ? null : v.inForceOn(ym.atDay(1).toEpochDay());
+        return t != null ? t : BUILT_IN.get(kind);
+    }
+
+    /*
+     * This returns a number that changes whenever the rate files are loaded again.
+     */
+    public static long version() {
+        current();
+        return version;
+    }
+
+    /*
+     * This forces the next lookup to read the rate files again.
+     */
+    public static synchronized void invalidate() {
+        loaded = null;
+    }
+
+    private static Map<Kind, Versions> current() {
+        Map<Kind, Versions> m = loaded;
+        long now = System.nanoTime();
+        if (m != null && now - lastStampCheck < STAMP_CHECK_INTERVAL_NANOS) return m;
+        return reloadIfChanged(now);
+    }
+
+    private static synchronized Map<Kind, Versions> reloadIfChanged(long now) {
+        lastStampCheck = now;
+
+        File[] files = rateFiles();
+        long stamp = stampOf(files);
+        if (loaded != null && stamp == loadedStamp) return loaded;
+
+        Map<Kind, TreeMap<LocalDate, RateTable>> found = new EnumMap<>(Kind.class);
+        for (File f : files) {
+            Kind kind = kindOf(f.getName());
+            LocalDate effective = effectiveDateOf(f.getName());
+            if (kind == null || effective == null) continue;
+
+            try {
+                found.computeIfAbsent(kind, k -> new TreeMap<>()).put(effective, read(f));
+            } catch (IOException | RuntimeException e) {
+                // A broken file is left out; the previous version or the built-in table is used
+                e.printStackTrace();
+            }
+        }
+
+        Map<Kind, Versions> m = new EnumMap<>(Kind.class);
+        for (Map.Entry<Kind, TreeMap<LocalDate, RateTable>> e : found.entrySet()) {
+            m.put(e.getKey(), new Versions(e.getValue()));
+        }
+
+        loaded = m;
+        loadedStamp = stamp;
+        version++;
+        return m;
+    }
+
+    /*
+     * This reads one table file. Rows must be in increasing order of From.
+     * It is also used to load a schedule that is not in force yet,
+     * for example to simulate the payroll under it.
+     */
+    public static RateTable read(File f) throws IOException {
+        List<long[]> rows = new ArrayList<>();
+
+        try (CsvCodec.Reader r = new CsvCodec.Reader(new BufferedReader(new FileReader(f)))) {
+            if (!r.next()) throw new IOException(f.getPath() + " is empty.");
+
+            CsvCodec.Header h = new CsvCodec.Header(r);
+            int from = h.indexOf("From");
+            int base = h.indexOf("Base");
+            int over = h.indexOf("Over");
+            int rate = h.indexOf("Rate %", "Rate");
+            if (from < 0 || base < 0) throw new IOException(f.getPath() + " needs at least the From and Base columns.");
+
+            while (r.next()) {
+                if (r.get(from).isEmpty()) continue;
+                rows.add(new long[]{
+                        centavos(r.get(from)),
+                        centavos(r.get(base)),
+                        over < 0 ? 0 : centavos(r.get(over)),
+                        rate < 0 ? 0 : basisPoints(r.get(rate))
+                });
+            }
+        }
+
+        long[][] cols = new long[4][rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            for (int c = 0; c < 4; c++) cols[c][i] = rows.get(i)[c];
+        }
+        return new RateTable(cols[0], cols[1], cols[2], cols[3]);
+    }
+
+    private static long centavos(String pesos) {
+        if (pesos.isEmpty()) return 0;
+        return new BigDecimal(pesos).movePointRight(2).longValueExact();
+    }
+
+    // "1.5" percent is 150 basis points
+    private static long basisPoints(String percent) {
+        if (percent.isEmpty()) return 0;
+        return new BigDecimal(percent).movePointRight(2).longValueExact();
+    }
+
+    private static File[] rateFiles() {
+        File[] files = new File(DIR).listFiles((d, name) -> name.endsWith(".csv"));
+        if (files == null) return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static long stampOf(File[] files) {
+        long stamp = files.length;
+        for (File f : files) {
+            stamp = stamp * 31 + f.getName().hashCode();
+            stamp = stamp * 31 + f.length();
+            stamp = stamp * 31 + f.lastModified();
+        }
+        return stamp;
+    }
+
+    private static Kind kindOf(String fileName) {
+        int sep = fileName.lastIndexOf('_');
+        if (sep < 0) return null;
+
+        String name = fileName.substring(0, sep);
+        for (Kind k : Kind.values()) {
+            if (k.fileName.equals(name)) return k;
+        }
+        return null;
+    }
+
+    private static LocalDate effectiveDateOf(String fileName) {
+        int sep = fileName.lastIndexOf('_');
+        if (sep < 0) return null;
+
+        try {
+            return LocalDate.parse(fileName.substring(sep + 1, fileName.length() - 4));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /*
+     * These are the rates the program was written with.
+     * They are used when there is no rate file for a month.
+     */
+    private static Map<Kind, RateTable> builtInTables() {
+        Map<Kind, RateTable> m = new EnumMap<>(Kind.class);
+
+        // SSS: 135.00 below 3,250, then 157.50 rising 22.50 per 500 pesos, up to 1,125.00
+        long[] from = new long[45];
+        long[] share = new long[45];
+        share[0] = 13_500;
+        for (int i = 1; i < 45; i++) {
+            from[i] = 325_000 + (i - 1) * 50_000L;
+            share[i] = 15_750 + (i - 1) * 2_250L;
+        }
+        m.put(Kind.SSS, new RateTable(from, share, new long[45], new long[45]));
+
+        // PhilHealth: half of a 3% premium of at least 300.00 and at most 1,800.00
+        m.put(Kind.PHILHEALTH, new RateTable(
+                new long[]{0, 1_000_001, 6_000_000},
+                new long[]{15_000, 0, 90_000},
+                new long[]{0, 0, 0},
+                new long[]{0, 150, 0}));
+
+        // Pag-IBIG: 1% up to 1,500.00, 2% above that
+        m.put(Kind.PAGIBIG, new RateTable(
+                new long[]{0, 1, 150_001},
+                new long[]{0, 0, 0},
+                new long[]{0, 0, 0},
+                new long[]{0, 100, 200}));
+
+        // Monthly withholding tax
+        m.put(Kind.WITHHOLDING_TAX, new RateTable(
+                new long[]{0, 2_083_201, 3_333_300, 6_666_700, 16_666_700, 66_666_700},
+                new long[]{0, 0, 250_000, 1_083_300, 4_083_333, 20_083_333},
+                new long[]{0, 2_083_300, 3_333_300, 6_666_700, 16_666_700, 66_666_700},
+                new long[]{0, 2_000, 2_500, 3_000, 3_200, 3_500}));
+
+        // Annual income tax, used for the year-end adjustment
+        m.put(Kind.ANNUAL_TAX, new RateTable(
+                new long[]{0, 25_000_001, 40_000_001, 80_000_001, 200_000_001, 800_000_001},
+                new long[]{0, 0, 3_000_000, 13_000_000, 49_000_000, 241_000_000},
+                new long[]{0, 25_000_000, 40_000_000, 80_000_000, 200_000_000, 800_000_000},
+                new long[]{0, 2_000, 2_500, 3_000, 3_200, 3_500}));
+
+        return m;
+    }
+
+    /*
+     * This holds every version of one table, sorted by effective date.
+     */
+    private static class Versions {
+        final long[] effectiveDay;
+        final RateTable[] tables;
+
+        Versions(TreeMap<LocalDate, RateTable> byDate) {
+            effectiveDay = new long[byDate.size()];
+            tables = new RateTable[byDate.size()];
+
+            int i = 0;
+            for (Map.Entry<LocalDate, RateTable> e : byDate.entrySet()) {
+                effectiveDay[i] = e.getKey().toEpochDay();
+                tables[i] = e.getValue();
+                i++;
+            }
+        }
+
+        // The newest version that started on or before the day, or null
+        RateTable inForceOn(long epochDay) {
+            int i = Arrays.binarySearch(effectiveDay, epochDay);
+            if (i < 0) i = -i - 2;
+            return i < 0 ? null : tables[i];
+        }
+    }
+}
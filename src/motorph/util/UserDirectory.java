@@ -0,0 +1,114 @@
+package motorph.util;
+
+import motorph.model.User;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * This class keeps the user accounts in memory with a hash index
+ * of lower-cased usernames, so a login or a "username taken" check
+ * is one map lookup instead of reading users.csv again.
+ *
+ * users.csv is read again only when its size or modification time changes,
+ * checked at most once per second. New accounts written by
+ * UserIOUtil.appendUser are added to the index directly.
+ */
+public class UserDirectory {
+
+    // Outside changes to users.csv are noticed within this time
+    private static final long STAMP_CHECK_INTERVAL_NANOS = 1_000_000_000L;
+
+    // Users in file order, and the first account of each folded username
+    private static List<User> all;
+    private static Map<String, User> byUsername;
+
+    private static long loadedModified = -1;
+    private static long loadedSize = -1;
+    private static long lastStampCheck;
+
+    public static synchronized List<User> findAll() {
+        ensureLoaded();
+
+        List<User> out = new ArrayList<>(all.size());
+        for (User u : all) {
+            out.add(copyOf(u));
+        }
+        return out;
+    }
+
+    /*
+     * This finds a user by username, ignoring uppercase or lowercase.
+     */
+    public static synchronized User findByUsername(String username) {
+        if (username == null) return null;
+        ensureLoaded();
+
+        User u = byUsername.get(fold(username));
+        return u == null ? null : copyOf(u);
+    }
+
+    /*
+     * This is called right after one account was appended to users.csv.
+     * sizeBefore is the file size before the append; if it does not match
+     * the loaded file, something else changed it and the file is read again later.
+     */
+    static synchronized void recordAppended(User user, long sizeBefore) {
+        if (all == null || sizeBefore != loadedSize) {
+            invalidate();
+            return;
+        }
+
+        add(copyOf(user));
+        rememberStamp();
+    }
+
+    /*
+     * This forces the next lookup to read users.csv again.
+     */
+    public static synchronized void invalidate() {
+        all = null;
+        byUsername = null;
+        loadedModified = -1;
+        loadedSize = -1;
+    }
+
+    private static void ensureLoaded() {
+        long now = System.nanoTime();
+        if (all != null && now - lastStampCheck < STAMP_CHECK_INTERVAL_NANOS) return;
+        lastStampCheck = now;
+
+        File f = UserIOUtil.dataFile();
+        if (all != null && f.lastModified() == loadedModified && f.length() == loadedSize) return;
+
+        all = new ArrayList<>();
+        byUsername = new HashMap<>();
+        for (User u : UserIOUtil.loadUsers()) {
+            add(u);
+        }
+        rememberStamp();
+    }
+
+    private static void add(User u) {
+        all.add(u);
+        if (u.getUsername() != null) byUsername.putIfAbsent(fold(u.getUsername()), u);
+    }
+
+    private static void rememberStamp() {
+        File f = UserIOUtil.dataFile();
+        loadedModified = f.lastModified();
+        loadedSize = f.length();
+    }
+
+    private static String fold(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static User copyOf(User u) {
+        return new User(u.getUsername(), u.getPassword(), u.getRole(), u.getEmployeeNumber());
+    }
+}
@@ -24,20 +24,20 @@ public class UserIOUtil {
 
         List<User> users = new ArrayList<>();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(PATH))) {
-            String line;
-            boolean first = true;
+        try (CsvCodec.Reader r = new CsvCodec.Reader(new BufferedReader(new FileReader(PATH)))) {
+            if (!r.next()) return users;
 
-            while ((line = br.readLine()) != null) {
-                if (first) { first = false; continue; }
-                if (line.trim().isEmpty()) continue;
+            CsvCodec.Header h = new CsvCodec.Header(r);
+            int usernameCol = h.indexOf("Username");
+            int passwordCol = h.indexOf("Password");
+            int roleCol = h.indexOf("Role");
+            int employeeCol = h.indexOf("Employee #");
 
-                String[] p = line.split(",", -1);
-
-                String username = get(p, 0);
-                String password = get(p, 1);
-                String roleText = get(p, 2).toUpperCase();
-                String employeeNo = get(p, 3);
+            while (r.next()) {
+                String username = r.get(usernameCol);
+                String password = r.get(passwordCol);
+                String roleText = r.get(roleCol).toUpperCase();
+                String employeeNo = r.get(employeeCol);
 
                 if (username.isEmpty() || password.isEmpty()) continue;
 
@@ -64,30 +64,34 @@ public class UserIOUtil {
     public static boolean usernameExists(String username) {
         if (username == null || username.trim().isEmpty()) return false;
 
-        for (User u : loadUsers()) {
-            if (username.trim().equalsIgnoreCase(u.getUsername())) {
-                return true;
-            }
-        }
-        return false;
+        return UserDirectory.findByUsername(username.trim()) != null;
     }
 
     /*
-     * This adds a new user account to users.csv.
+     * This adds a new user account to users.csv
+     * and to the in-memory user directory.
      */
     public static void appendUser(User user) {
         ensureFile();
 
+        long sizeBefore = dataFile().length();
         try (PrintWriter pw = new PrintWriter(new FileWriter(PATH, true))) {
-            pw.println(csv(
+            pw.println(CsvCodec.row(
                     user.getUsername(),
                     user.getPassword(),
                     user.getRole() == null ? "" : user.getRole().name(),
                     user.getEmployeeNumber()
             ));
         } catch (Exception e) {
+            UserDirectory.invalidate();
             throw new RuntimeException("Failed to save user account.", e);
         }
+
+        UserDirectory.recordAppended(user, sizeBefore);
+    }
+
+    static File dataFile() {
+        return new File(PATH);
     }
 
     /*
@@ -109,24 +113,4 @@ public class UserIOUtil {
             throw new RuntimeException("Failed to initialize users.csv", e);
         }
     }
-
-    private static String get(String[] p, int idx) {
-        if (idx >= p.length) return "";
-        return p[idx] == null ? "" : p[idx].trim();
-    }
-
-    /*
-     * This makes values safer before writing them to CSV
-     * by removing commas and line breaks.
-     */
-    private static String csv(String... vals) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < vals.length; i++) {
-            String v = vals[i] == null ? "" : vals[i];
-            v = v.replace(",", " ").replace("\n", " ").replace("\r", " ");
-            if (i > 0) sb.append(",");
-            sb.append(v);
-        }
-        return sb.toString();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+package motorph.util;
+
+import motorph.model.AttendanceEntry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * This class knows which days are working days: Monday to Friday,
+ * except the holidays listed in data/holidays.csv (columns Date,Name).
+ *
+ * Each month is worked out once and cached as a bitmap, where bit (day - 1)
+ * is set for a working day; the number of working days is its bit count.
+ * A payroll run therefore looks the month up instead of walking its days
+ * for every employee.
+ *
+ * The holiday file is checked for changes at most once per second;
+ * when it changes, the cached months are worked out again.
+ */
+public class WorkingDayCalendar {
+
+    private static final String HOLIDAY_FILE = "data/holidays.csv";
+
+    // Outside changes to the holiday file are noticed within this time
+    private static final long STAMP_CHECK_INTERVAL_NANOS = 1_000_000_000L;
+
+    // Replaced as a whole when the holiday file changes, so readers need no lock
+    private static volatile Calendar current;
+    private static volatile long lastStampCheck;
+    private static volatile long version;
+
+    /*
+     * This returns the number of working days in the month.
+     */
+    public static int workingDays(YearMonth ym) {
+        return Integer.bitCount(workingDayMask(ym));
+    }
+
+    /*
+     * This returns the month's working days as a bitmap:
+     * bit 0 is day 1, bit 30 is day 31.
+     */
+    public static int workingDayMask(YearMonth ym) {
+        return calendar().maskOf(ym);
+    }
+
+    /*
+     * This counts the working days of the month, up to and including today,
+     * that have no complete attendance entry.
+     */
+    public static int missedWorkingDays(YearMonth ym, List<AttendanceEntry> entries) {
+        int expected = workingDayMask(ym);
+
+        LocalDate today = LocalDate.now();
+        YearMonth thisMonth = YearMonth.from(today);
+        if (ym.isAfter(thisMonth)) return 0;
+        if (ym.equals(thisMonth)) {
+            expected &= (1 << today.getDayOfMonth()) - 1; // day 31 gives all 31 bits
+        }
+
+        int present = 0;
+        for (AttendanceEntry e : entries) {
+            if (e.getDate() != null && YearMonth.from(e.getDate()).equals(ym)) {
+                present |= 1 << (e.getDate().getDayOfMonth() - 1);
+            }
+        }
+        return Integer.bitCount(expected & ~present);
+    }
+
+    /*
+     * This returns a number that changes whenever the holiday file is read again.
+     */
+    public static long version() {
+        calendar();
+        return version;
+    }
+
+    /*
+     * This forces the holiday file to be read again on the next lookup.
+     */
+    public static synchronized void invalidate() {
+        current = null;
+    }
+
+    private static Calendar calendar() {
+        Calendar c = current;
+        long now = System.nanoTime();
+        if (c != null && now - lastStampCheck < STAMP_CHECK_INTERVAL_NANOS) return c;
+        return reloadIfChanged(now);
+    }
+
+    private static synchronized Calendar reloadIfChanged(long now) {
+        lastStampCheck = now;
+
+        File f = new File(HOLIDAY_FILE);
+        long modified = f.lastModified();
+        long size = f.length();
+        if (current != null && current.modified == modified && current.size == size) return current;
+
+        current = new Calendar(loadHolidays(f), modified, size);
+        version++;
+        return current;
+    }
+
+    private static Set<LocalDate> loadHolidays(File f) {
+        if (!f.exists()) return Collections.emptySet();
+
+        Set<LocalDate> out = new HashSet<>();
+        try (CsvCodec.Reader r = new CsvCodec.Reader(new BufferedReader(new FileReader(f)))) {
+            if (!r.next()) return out;
+
+            int date = new CsvCodec.Header(r).indexOf("Date");
+            if (date < 0) date = 0;
+
+            while (r.next()) {
+                LocalDate d = AttendanceUtil.parseDateFlexible(r.get(date));
+                if (d != null) out.add(d);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return out;
+    }
+
+    /*
+     * This holds one version of the holiday list and the months worked out from it.
+     */
+    private static class Calendar {
+        final Set<LocalDate> holidays;
+        final long modified;
+        final long size;
+        final Map<YearMonth, Integer> masks = new ConcurrentHashMap<>();
+
+        Calendar(Set<LocalDate> holidays, long modified, long size) {
+            this.holidays = holidays;
+            this.modified = modified;
+            this.size = size;
+        }
+
+        int maskOf(YearMonth ym) {
+            return masks.computeIfAbsent(ym, this::buildMask);
+        }
+
+        private int buildMask(YearMonth ym) {
+            int mask = 0;
+            DayOfWeek dow = ym.atDay(1).getDayOfWeek();
+            for (int day = 1; day <= ym.lengthOfMonth(); day++) {
+                boolean weekday = dow != DayOfWeek.SATURDAY && dow != DayOfWeek.SUNDAY;
+                if (weekday && !holidays.contains(ym.atDay(day))) mask |= 1 << (day - 1);
+                dow = dow.plus(1);
+            }
+            return mask;
+        }
+    }
+}
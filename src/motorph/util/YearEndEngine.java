@@ -0,0 +1,197 @@
+package motorph.util;
+
+import motorph.model.YearEndAdjustment;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * This class works out the year-end adjustment of every employee
+ * from the saved monthly payroll records of one calendar year.
+ *
+ * The payroll file is read once from top to bottom. Each employee gets
+ * twelve month slots of primitive amounts; when a month was saved more
+ * than once, the later row replaces the earlier one, as the newest save wins.
+ *
+ * From the year's totals it computes:
+ *   - 13th month pay: one twelfth of the basic salary earned in the year,
+ *     less late deductions;
+ *   - the annual income tax due on the year's taxable income plus the part
+ *     of the 13th month pay above the tax-exempt ceiling, from the annual
+ *     tax table (see RateTables);
+ *   - the tax adjustment: the tax due less the tax withheld every month.
+ *
+ * The adjustments of a year are saved together to data/year_end_<year>.csv,
+ * replacing the file of an earlier run for the same year.
+ */
+public class YearEndEngine {
+
+    // 13th month pay and other benefits are tax-exempt up to 90,000.00 a year
+    private static final long THIRTEENTH_MONTH_EXEMPTION = 9_000_000;
+
+    private static final String HEADER = "Year,Employee #,Employee Name,Months Paid,Basic Earned,Gross Pay,Total Gov,Taxable Income,13th Month Pay,Taxable 13th Month,Annual Tax Due,Tax Withheld,Tax Adjustment";
+
+    /*
+     * This returns the adjustments of every employee with at least one
+     * payroll record in the year, sorted by employee number.
+     */
+    public static List<YearEndAdjustment> compute(int year) {
+        Map<String, Annual> byEmployee = new HashMap<>();
+
+        File f = PayrollIOUtil.dataFile();
+        if (f.exists()) {
+            PayrollIOUtil.Columns cols = PayrollIOUtil.columns();
+            String prefix = year + "-";
+
+            try (CsvCodec.Reader r = new CsvCodec.Reader(new BufferedReader(new FileReader(f)))) {
+                r.next(); // header
+
+                while (r.next()) {
+                    int[] c = cols.forRow(r).pos;
+
+                    String month = c[PayrollIOUtil.MONTH] < 0 ? "" : r.get(c[PayrollIOUtil.MONTH]);
+                    String empNo = r.get(c[PayrollIOUtil.EMP_NO]);
+                    if (!month.startsWith(prefix) || empNo.isEmpty()) continue;
+
+                    int m;
+                    try {
+                        m = YearMonth.parse(month).getMonthValue() - 1;
+                    } catch (DateTimeParseException e) {
+                        continue;
+                    }
+
+                    byEmployee.computeIfAbsent(empNo, k -> new Annual()).set(m, r, c);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        List<YearEndAdjustment> out = new ArrayList<>();
+        for (Map.Entry<String, Annual> e : byEmployee.entrySet()) {
+            out.add(e.getValue().toAdjustment(year, e.getKey()));
+        }
+        out.sort(Comparator.comparing(YearEndAdjustment::getEmployeeNumber));
+        return out;
+    }
+
+    /*
+     * This writes the adjustments of a year in one batch. The rows go to a
+     * temporary file first, which then replaces data/year_end_<year>.csv.
+     */
+    public static void save(int year, List<YearEndAdjustment> adjustments) {
+        File dir = new File("data");
+        if (!dir.exists()) dir.mkdirs();
+
+        File target = new File(dir, "year_end_" + year + ".csv");
+        File temp = new File(dir, "year_end_" + year + ".csv.tmp");
+
+        try {
+            try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(temp)))) {
+                pw.println(HEADER);
+                for (YearEndAdjustment a : adjustments) {
+                    pw.println(toCsv(a));
+                }
+            }
+
+            try {
+                Files.move(temp.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toCsv(YearEndAdjustment a) {
+        return CsvCodec.row(new String[]{
+                String.valueOf(a.getYear()),
+                a.getEmployeeNumber(),
+                a.getEmployeeName(),
+                String.valueOf(a.getMonthsPaid()),
+                String.valueOf(a.getBasicEarned()),
+                String.valueOf(a.getGrossPay()),
+                String.valueOf(a.getTotalGovDeductions()),
+                String.valueOf(a.getTaxableIncome()),
+                String.valueOf(a.getThirteenthMonthPay()),
+                String.valueOf(a.getTaxableThirteenthMonth()),
+                String.valueOf(a.getAnnualTaxDue()),
+                String.valueOf(a.getTaxWithheld()),
+                String.valueOf(a.getTaxAdjustment())
+        });
+    }
+
+    /*
+     * This holds one employee's year as twelve month slots in centavos.
+     */
+    private static class Annual {
+        String name;
+        int monthsPaid; // bit m is set when month m + 1 has a record
+
+        final long[] basic = new long[12];
+        final long[] lateDeduction = new long[12];
+        final long[] gross = new long[12];
+        final long[] gov = new long[12];
+        final long[] taxable = new long[12];
+        final long[] tax = new long[12];
+
+        void set(int m, CsvCodec.Reader r, int[] c) {
+            monthsPaid |= 1 << m;
+            if (c[PayrollIOUtil.EMP_NAME] >= 0) name = r.get(c[PayrollIOUtil.EMP_NAME]);
+
+            basic[m] = centavos(r, c[PayrollIOUtil.BASIC_EARNED]);
+            lateDeduction[m] = centavos(r, c[PayrollIOUtil.LATE_DEDUCTION]);
+            gross[m] = centavos(r, c[PayrollIOUtil.GROSS_PAY]);
+            gov[m] = centavos(r, c[PayrollIOUtil.TOTAL_GOV]);
+            taxable[m] = centavos(r, c[PayrollIOUtil.TAXABLE_INCOME]);
+            tax[m] = centavos(r, c[PayrollIOUtil.WITHHOLDING_TAX]);
+        }
+
+        YearEndAdjustment toAdjustment(int year, String empNo) {
+            long basicTotal = sum(basic);
+            long taxableTotal = sum(taxable);
+            long withheld = sum(tax);
+
+            long thirteenth = Math.max(0, Money.times(basicTotal - sum(lateDeduction), 1, 12));
+            long taxableThirteenth = Math.max(0, thirteenth - THIRTEENTH_MONTH_EXEMPTION);
+            long due = PayrollCalculator.annualTax(year, taxableTotal + taxableThirteenth);
+
+            YearEndAdjustment a = new YearEndAdjustment();
+            a.setYear(year);
+            a.setEmployeeNumber(empNo);
+            a.setEmployeeName(name);
+            a.setMonthsPaid(Integer.bitCount(monthsPaid));
+            a.setBasicEarned(Money.toPesos(basicTotal));
+            a.setGrossPay(Money.toPesos(sum(gross)));
+            a.setTotalGovDeductions(Money.toPesos(sum(gov)));
+            a.setTaxableIncome(Money.toPesos(taxableTotal));
+            a.setThirteenthMonthPay(Money.toPesos(thirteenth));
+            a.setTaxableThirteenthMonth(Money.toPesos(taxableThirteenth));
+            a.setAnnualTaxDue(Money.toPesos(due));
+            a.setTaxWithheld(Money.toPesos(withheld));
+            a.setTaxAdjustment(Money.toPesos(due - withheld));
+            return a;
+        }
+
+        private static long centavos(CsvCodec.Reader r, int column) {
+            return column < 0 ? 0 : Money.ofPesos(r.getDouble(column, 0));
+        }
+
+        private static long sum(long[] months) {
+            long total = 0;
+            for (long v : months) total += v;
+            return total;
+        }
+    }
+}